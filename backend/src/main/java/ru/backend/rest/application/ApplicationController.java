@@ -74,6 +74,8 @@ public class ApplicationController {
             return ResponseEntity.ok("Приложение обновлено");
         } catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body("Приложение не найдено: " + name);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Неверные данные: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Ошибка при обновлении: " + e.getMessage());
         }
@@ -10,6 +10,8 @@ public class ApplicationDto {
     private String syncStrategy;
     private String createdAt;
     private String status = "Not Synced";
+    private String deployedCommit;
+    private String remoteCommit;
 
     public ApplicationDto() {
     }
@@ -99,4 +101,20 @@ public class ApplicationDto {
     public void setStatus(String status) {
         this.status = status;
     }
+
+    public String getDeployedCommit() {
+        return deployedCommit;
+    }
+
+    public void setDeployedCommit(String deployedCommit) {
+        this.deployedCommit = deployedCommit;
+    }
+
+    public String getRemoteCommit() {
+        return remoteCommit;
+    }
+
+    public void setRemoteCommit(String remoteCommit) {
+        this.remoteCommit = remoteCommit;
+    }
 }
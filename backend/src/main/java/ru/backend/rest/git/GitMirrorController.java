@@ -0,0 +1,35 @@
+package ru.backend.rest.git;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.backend.service.git.GitMirrorStore;
+
+@RestController
+@RequestMapping("/git/mirrors")
+@RequiredArgsConstructor
+public class GitMirrorController {
+
+    private final GitMirrorStore mirrorStore;
+
+    @GetMapping
+    public ResponseEntity<?> getStats() {
+        try {
+            return ResponseEntity.ok(mirrorStore.getStats());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Ошибка получения состояния зеркал: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/maintenance")
+    public ResponseEntity<?> maintain() {
+        try {
+            return ResponseEntity.ok(mirrorStore.maintain());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Ошибка обслуживания зеркал: " + e.getMessage());
+        }
+    }
+}
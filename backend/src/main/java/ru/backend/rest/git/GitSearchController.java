@@ -0,0 +1,40 @@
+package ru.backend.rest.git;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.backend.service.git.GitSearchService;
+
+import java.util.NoSuchElementException;
+import java.util.regex.PatternSyntaxException;
+
+@RestController
+@RequestMapping("/git/search")
+@RequiredArgsConstructor
+public class GitSearchController {
+
+    private final GitSearchService gitSearchService;
+
+    @GetMapping
+    public ResponseEntity<?> search(@RequestParam String q,
+                                    @RequestParam(required = false) String regex,
+                                    @RequestParam(required = false) String repo,
+                                    @RequestParam(required = false) String branch,
+                                    @RequestParam(defaultValue = "0") int offset,
+                                    @RequestParam(defaultValue = "50") int limit) {
+        try {
+            return ResponseEntity.ok(gitSearchService.search(q, regex, repo, branch, offset, limit));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (PatternSyntaxException e) {
+            return ResponseEntity.badRequest().body("Некорректное регулярное выражение: " + e.getDescription());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Некорректный запрос: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Ошибка поиска: " + e.getMessage());
+        }
+    }
+}
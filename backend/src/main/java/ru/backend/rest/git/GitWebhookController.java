@@ -0,0 +1,53 @@
+package ru.backend.rest.git;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.backend.service.git.GitWebhookService;
+
+import java.util.NoSuchElementException;
+
+@RestController
+@RequestMapping("/hooks/git")
+@RequiredArgsConstructor
+public class GitWebhookController {
+
+    private final GitWebhookService webhookService;
+
+    @PostMapping
+    public ResponseEntity<?> receive(@RequestBody byte[] body,
+                                     @RequestHeader(value = "X-GitHub-Event", required = false) String githubEvent,
+                                     @RequestHeader(value = "X-Gitea-Event", required = false) String giteaEvent,
+                                     @RequestHeader(value = "X-Hub-Signature-256", required = false) String githubSignature,
+                                     @RequestHeader(value = "X-Gitea-Signature", required = false) String giteaSignature) {
+        if (!webhookService.isEnabled()) {
+            return ResponseEntity.status(403).body("Вебхуки отключены: не задан git.webhook.secret");
+        }
+        String signature = githubSignature != null ? githubSignature : giteaSignature;
+        if (!webhookService.verifySignature(body, signature)) {
+            return ResponseEntity.status(401).body("Неверная подпись вебхука");
+        }
+
+        String event = githubEvent != null ? githubEvent : giteaEvent;
+        if ("ping".equals(event)) {
+            return ResponseEntity.ok("pong");
+        }
+        if (event != null && !"push".equals(event)) {
+            return ResponseEntity.accepted().body("Событие пропущено: " + event);
+        }
+
+        try {
+            return ResponseEntity.ok(webhookService.handlePush(body));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Некорректный вебхук: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Ошибка обработки вебхука: " + e.getMessage());
+        }
+    }
+}
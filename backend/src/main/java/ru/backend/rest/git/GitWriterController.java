@@ -1,7 +1,12 @@
 package ru.backend.rest.git;
 
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import ru.backend.rest.git.dto.*;
@@ -14,7 +19,6 @@ import ru.backend.util.EncryptionUtils;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
@@ -63,9 +67,45 @@ public class GitWriterController {
     }
 
     @GetMapping("/{name}/branch/{branch}/tree")
-    public ResponseEntity<?> listFiles(@PathVariable String name, @PathVariable String branch, @RequestParam(defaultValue = "") String path) {
+    public ResponseEntity<?> listFiles(@PathVariable String name,
+                                       @PathVariable String branch,
+                                       @RequestParam(defaultValue = "") String path,
+                                       @RequestParam(required = false) Integer depth,
+                                       @RequestParam(required = false) String cursor,
+                                       @RequestParam(required = false) Integer limit,
+                                       @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         try {
-            return ResponseEntity.ok(gitWriterService.listFiles(gitService.getByName(name), branch, path));
+            GitConnectionRequestDto repo = gitService.getByName(name);
+            boolean paged = depth != null || cursor != null || limit != null;
+            GitWriterService.PathObject dir;
+            try {
+                dir = gitWriterService.resolvePath(repo, branch, path);
+            } catch (FileNotFoundException | RefNotFoundException e) {
+                if (paged) throw new FileNotFoundException("Папка не найдена: " + path);
+                return ResponseEntity.ok(List.of());
+            }
+            if (!dir.tree()) {
+                if (paged) throw new FileNotFoundException("Папка не найдена: " + path);
+                return ResponseEntity.ok(List.of());
+            }
+
+            String etag = strongETag(dir.id());
+            if (matchesETag(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            if (!paged) {
+                return ResponseEntity.ok().eTag(etag).body(gitWriterService.listFiles(repo, dir.id()));
+            }
+            return ResponseEntity.ok().eTag(etag).body(gitWriterService.listTree(
+                    repo, path, dir.id(),
+                    depth != null ? depth : 1,
+                    cursor,
+                    limit != null ? limit : 200
+            ));
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Некорректный курсор: " + e.getMessage());
         } catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
         } catch (Exception e) {
@@ -74,9 +114,24 @@ public class GitWriterController {
     }
 
     @GetMapping("/{name}/branch/{branch}/entry")
-    public ResponseEntity<?> getEntry(@PathVariable String name, @PathVariable String branch, @RequestParam String path) {
+    public ResponseEntity<?> getEntry(@PathVariable String name,
+                                      @PathVariable String branch,
+                                      @RequestParam String path,
+                                      @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         try {
-            return ResponseEntity.ok(gitWriterService.readEntry(gitService.getByName(name), branch, path));
+            GitConnectionRequestDto repo = gitService.getByName(name);
+            GitWriterService.PathObject entry;
+            try {
+                entry = gitWriterService.resolvePath(repo, branch, path);
+            } catch (FileNotFoundException | RefNotFoundException e) {
+                return ResponseEntity.ok(gitWriterService.readEntry(repo, branch, path));
+            }
+
+            String etag = strongETag(entry.id());
+            if (matchesETag(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(gitWriterService.readEntry(repo, path, entry));
         } catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
         } catch (Exception e) {
@@ -133,9 +188,22 @@ public class GitWriterController {
     }
 
     @GetMapping("/{name}/branch/{branch}/file")
-    public ResponseEntity<?> getFileContent(@PathVariable String name, @PathVariable String branch, @RequestParam String path) {
+    public ResponseEntity<?> getFileContent(@PathVariable String name,
+                                            @PathVariable String branch,
+                                            @RequestParam String path,
+                                            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         try {
-            return ResponseEntity.ok(gitWriterService.getFileContent(gitService.getByName(name), branch, path));
+            GitConnectionRequestDto repo = gitService.getByName(name);
+            GitWriterService.PathObject file = gitWriterService.resolvePath(repo, branch, path);
+            if (file.tree()) {
+                throw new FileNotFoundException(path);
+            }
+
+            String etag = strongETag(file.id());
+            if (matchesETag(ifNoneMatch, etag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+            }
+            return ResponseEntity.ok().eTag(etag).body(gitWriterService.readFile(repo, file.id()));
         } catch (FileNotFoundException e) {
             return ResponseEntity.status(404).body("Файл не найден: " + e.getMessage());
         } catch (NoSuchElementException e) {
@@ -160,6 +228,36 @@ public class GitWriterController {
         }
     }
 
+    @GetMapping("/{name}/branch/{branch}/history")
+    public ResponseEntity<?> getHistory(@PathVariable String name,
+                                        @PathVariable String branch,
+                                        @RequestParam(defaultValue = "") String path,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "20") int limit) {
+        try {
+            return ResponseEntity.ok(gitWriterService.getHistory(gitService.getByName(name), branch, path, cursor, limit));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Некорректный курсор: " + e.getMessage());
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Ошибка получения истории: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/{name}/branch/{branch}/blame")
+    public ResponseEntity<?> blame(@PathVariable String name, @PathVariable String branch, @RequestParam String path) {
+        try {
+            return ResponseEntity.ok(gitWriterService.blame(gitService.getByName(name), branch, path));
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Ошибка получения blame: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/{name}/branch/{branch}/create-folder")
     public ResponseEntity<String> createFolder(@PathVariable String name, @PathVariable String branch, @RequestBody GitCreateFolderRequest request) {
         try {
@@ -181,6 +279,10 @@ public class GitWriterController {
             return ResponseEntity.ok("Удаление успешно выполнено");
         } catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Ошибка при удалении: " + e.getMessage());
         }
@@ -193,11 +295,31 @@ public class GitWriterController {
             return ResponseEntity.ok("Переименование успешно выполнено");
         } catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Ошибка при переименовании: " + e.getMessage());
         }
     }
 
+    @PostMapping("/{name}/branch/{branch}/commit")
+    public ResponseEntity<?> commitChanges(@PathVariable String name, @PathVariable String branch, @RequestBody GitCommitRequest request) {
+        try {
+            ObjectId commitId = gitWriterService.commitChanges(gitService.getByName(name), branch, request);
+            return ResponseEntity.status(201).body(Map.of("commitId", commitId.name()));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body("Ошибка при создании коммита: " + e.getMessage());
+        }
+    }
+
     @PostMapping("/{name}/branch/{branch}/revert")
     public ResponseEntity<String> revertCommit(@PathVariable String name, @PathVariable String branch, @RequestBody GitRevertRequest request) {
         try {
@@ -205,6 +327,10 @@ public class GitWriterController {
             return ResponseEntity.ok("Коммит успешно отменён");
         } catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(400).body(e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(409).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(500).body("Ошибка при откате: " + e.getMessage());
         }
@@ -215,10 +341,11 @@ public class GitWriterController {
             @PathVariable String name,
             @PathVariable String branch,
             @RequestParam String commitHash,
-            @RequestParam String path) {
+            @RequestParam(defaultValue = "") String path,
+            @RequestParam(required = false) String base) {
         try {
             GitConnectionRequestDto repo = gitService.getByName(name);
-            String diff = gitWriterService.getCommitDiff(repo, branch, commitHash, path);
+            String diff = gitWriterService.getDiff(repo, branch, base, commitHash, path);
             return ResponseEntity.ok(diff);
         } catch (NoSuchElementException e) {
             return ResponseEntity.status(404).body(Map.of("error", "Репозиторий не найден: " + e.getMessage()));
@@ -227,21 +354,99 @@ public class GitWriterController {
         }
     }
 
-    @GetMapping("/{name}/branch/{branch}/archive")
-    public ResponseEntity<byte[]> downloadArchive(@PathVariable String name, @PathVariable String branch) {
+    @GetMapping("/{name}/branch/{branch}/diff/stat")
+    public ResponseEntity<?> getDiffStat(
+            @PathVariable String name,
+            @PathVariable String branch,
+            @RequestParam String commitHash,
+            @RequestParam(defaultValue = "") String path,
+            @RequestParam(required = false) String base) {
         try {
             GitConnectionRequestDto repo = gitService.getByName(name);
-            byte[] zip = gitWriterService.downloadArchive(repo, branch);
+            return ResponseEntity.ok(gitWriterService.getDiffStat(repo, branch, base, commitHash, path));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body(Map.of("error", "Репозиторий не найден: " + e.getMessage()));
+        } catch (RefNotFoundException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Ошибка при получении diff: " + e.getMessage()));
+        }
+    }
 
-            return ResponseEntity.ok()
-                    .header("Content-Disposition", "attachment; filename=\"" + name + "-" + branch + ".zip\"")
-                    .header("Content-Type", "application/zip")
-                    .body(zip);
+    @GetMapping("/{name}/compare")
+    public ResponseEntity<?> compare(@PathVariable String name,
+                                     @RequestParam String base,
+                                     @RequestParam String head,
+                                     @RequestParam(defaultValue = "") String path) {
+        try {
+            GitConnectionRequestDto repo = gitService.getByName(name);
+            return ResponseEntity.ok(gitWriterService.compare(repo, base, head, path));
+        } catch (NoSuchElementException e) {
+            return ResponseEntity.status(404).body(Map.of("error", "Репозиторий не найден: " + e.getMessage()));
+        } catch (RefNotFoundException e) {
+            return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            return ResponseEntity.status(500).body(Map.of("error", "Ошибка при сравнении веток: " + e.getMessage()));
+        }
+    }
 
+    @GetMapping("/{name}/branch/{branch}/archive")
+    public ResponseEntity<?> downloadArchive(@PathVariable String name,
+                                             @PathVariable String branch,
+                                             @RequestParam(defaultValue = "") String path,
+                                             @RequestParam(defaultValue = "zip") String format,
+                                             @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch,
+                                             HttpServletResponse response) throws IOException, GitAPIException {
+        GitConnectionRequestDto repo;
+        String archiveFormat;
+        ObjectId treeId;
+        try {
+            repo = gitService.getByName(name);
+            archiveFormat = gitWriterService.archiveFormat(format);
+            treeId = gitWriterService.resolveArchiveTree(repo, branch, path);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (FileNotFoundException e) {
+            return ResponseEntity.status(404).body(e.getMessage());
         } catch (NoSuchElementException e) {
-            return ResponseEntity.status(404).body(("Репозиторий не найден: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return ResponseEntity.status(404).body("Репозиторий не найден: " + e.getMessage());
         } catch (Exception e) {
-            return ResponseEntity.status(500).body(("Ошибка при создании архива: " + e.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return ResponseEntity.status(500).body("Ошибка при создании архива: " + e.getMessage());
+        }
+
+        String etag = strongETag(treeId);
+        if (matchesETag(ifNoneMatch, etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+
+        String suffix = path.isBlank() ? "" : "-" + path.replaceAll("[^A-Za-z0-9._-]+", "_");
+        String filename = name + "-" + branch + suffix + ("zip".equals(archiveFormat) ? ".zip" : ".tar.gz");
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + filename + "\"");
+        response.setContentType("zip".equals(archiveFormat) ? "application/zip" : "application/gzip");
+        // Пишем прямо в ответ в потоке запроса: у асинхронного ответа MVC есть таймаут,
+        // и большой архив на медленном клиенте обрывался бы на середине
+        gitWriterService.writeArchive(repo, treeId, archiveFormat, response.getOutputStream());
+        return null;
+    }
+
+    private static String strongETag(ObjectId id) {
+        return "\"" + id.name() + "\"";
+    }
+
+    private static boolean matchesETag(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+            return false;
+        }
+        String opaque = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (String candidate : ifNoneMatch.split(",")) {
+            String value = candidate.trim();
+            if (value.equals("*") || (value.startsWith("W/") ? value.substring(2) : value).equals(opaque)) {
+                return true;
+            }
         }
+        return false;
     }
 }
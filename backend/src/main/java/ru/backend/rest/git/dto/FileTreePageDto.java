@@ -0,0 +1,43 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileTreePageDto {
+    private String path;
+    private List<FileNodeDto> items = new ArrayList<>();
+    private String nextCursor;
+
+    public FileTreePageDto() {
+    }
+
+    public FileTreePageDto(String path, List<FileNodeDto> items, String nextCursor) {
+        this.path = path;
+        this.items = items != null ? items : new ArrayList<>();
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public List<FileNodeDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<FileNodeDto> items) {
+        this.items = items != null ? items : new ArrayList<>();
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GitBlameDto {
+    private String path;
+    private String blobId;
+    private int lineCount;
+    private List<GitBlameRangeDto> ranges = new ArrayList<>();
+    private List<GitCommitDto> commits = new ArrayList<>();
+
+    public GitBlameDto() {}
+
+    public GitBlameDto(String path, String blobId, int lineCount, List<GitBlameRangeDto> ranges, List<GitCommitDto> commits) {
+        this.path = path;
+        this.blobId = blobId;
+        this.lineCount = lineCount;
+        this.ranges = ranges != null ? ranges : new ArrayList<>();
+        this.commits = commits != null ? commits : new ArrayList<>();
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getBlobId() {
+        return blobId;
+    }
+
+    public void setBlobId(String blobId) {
+        this.blobId = blobId;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public void setLineCount(int lineCount) {
+        this.lineCount = lineCount;
+    }
+
+    public List<GitBlameRangeDto> getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(List<GitBlameRangeDto> ranges) {
+        this.ranges = ranges != null ? ranges : new ArrayList<>();
+    }
+
+    public List<GitCommitDto> getCommits() {
+        return commits;
+    }
+
+    public void setCommits(List<GitCommitDto> commits) {
+        this.commits = commits != null ? commits : new ArrayList<>();
+    }
+}
@@ -0,0 +1,39 @@
+package ru.backend.rest.git.dto;
+
+public class GitBlameRangeDto {
+    private int start;
+    private int count;
+    private String commit;
+
+    public GitBlameRangeDto() {}
+
+    public GitBlameRangeDto(int start, int count, String commit) {
+        this.start = start;
+        this.count = count;
+        this.commit = commit;
+    }
+
+    public int getStart() {
+        return start;
+    }
+
+    public void setStart(int start) {
+        this.start = start;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public void setCount(int count) {
+        this.count = count;
+    }
+
+    public String getCommit() {
+        return commit;
+    }
+
+    public void setCommit(String commit) {
+        this.commit = commit;
+    }
+}
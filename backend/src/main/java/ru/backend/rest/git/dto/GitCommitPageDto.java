@@ -0,0 +1,33 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GitCommitPageDto {
+    private List<GitCommitDto> items = new ArrayList<>();
+    private String nextCursor;
+
+    public GitCommitPageDto() {
+    }
+
+    public GitCommitPageDto(List<GitCommitDto> items, String nextCursor) {
+        this.items = items != null ? items : new ArrayList<>();
+        this.nextCursor = nextCursor;
+    }
+
+    public List<GitCommitDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<GitCommitDto> items) {
+        this.items = items != null ? items : new ArrayList<>();
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,52 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GitCommitRequest {
+    private String commitMessage;
+    private List<GitFileUpsertDto> upserts = new ArrayList<>();
+    private List<String> deletes = new ArrayList<>();
+    private List<GitPathRenameDto> renames = new ArrayList<>();
+
+    public GitCommitRequest() {}
+
+    public GitCommitRequest(String commitMessage, List<GitFileUpsertDto> upserts, List<String> deletes, List<GitPathRenameDto> renames) {
+        this.commitMessage = commitMessage;
+        this.upserts = upserts != null ? upserts : new ArrayList<>();
+        this.deletes = deletes != null ? deletes : new ArrayList<>();
+        this.renames = renames != null ? renames : new ArrayList<>();
+    }
+
+    public String getCommitMessage() {
+        return commitMessage;
+    }
+
+    public void setCommitMessage(String commitMessage) {
+        this.commitMessage = commitMessage;
+    }
+
+    public List<GitFileUpsertDto> getUpserts() {
+        return upserts;
+    }
+
+    public void setUpserts(List<GitFileUpsertDto> upserts) {
+        this.upserts = upserts != null ? upserts : new ArrayList<>();
+    }
+
+    public List<String> getDeletes() {
+        return deletes;
+    }
+
+    public void setDeletes(List<String> deletes) {
+        this.deletes = deletes != null ? deletes : new ArrayList<>();
+    }
+
+    public List<GitPathRenameDto> getRenames() {
+        return renames;
+    }
+
+    public void setRenames(List<GitPathRenameDto> renames) {
+        this.renames = renames != null ? renames : new ArrayList<>();
+    }
+}
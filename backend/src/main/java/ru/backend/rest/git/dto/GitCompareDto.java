@@ -0,0 +1,89 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GitCompareDto {
+    private String base;
+    private String head;
+    private String mergeBase;
+    private int ahead;
+    private int behind;
+    private List<GitDiffFileDto> files = new ArrayList<>();
+    private int additions;
+    private int deletions;
+
+    public GitCompareDto() {}
+
+    public GitCompareDto(String base, String head, List<GitDiffFileDto> files) {
+        this.base = base;
+        this.head = head;
+        setFiles(files);
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    public void setBase(String base) {
+        this.base = base;
+    }
+
+    public String getHead() {
+        return head;
+    }
+
+    public void setHead(String head) {
+        this.head = head;
+    }
+
+    public String getMergeBase() {
+        return mergeBase;
+    }
+
+    public void setMergeBase(String mergeBase) {
+        this.mergeBase = mergeBase;
+    }
+
+    public int getAhead() {
+        return ahead;
+    }
+
+    public void setAhead(int ahead) {
+        this.ahead = ahead;
+    }
+
+    public int getBehind() {
+        return behind;
+    }
+
+    public void setBehind(int behind) {
+        this.behind = behind;
+    }
+
+    public List<GitDiffFileDto> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<GitDiffFileDto> files) {
+        this.files = files != null ? files : new ArrayList<>();
+        this.additions = this.files.stream().mapToInt(GitDiffFileDto::getAdditions).sum();
+        this.deletions = this.files.stream().mapToInt(GitDiffFileDto::getDeletions).sum();
+    }
+
+    public int getAdditions() {
+        return additions;
+    }
+
+    public void setAdditions(int additions) {
+        this.additions = additions;
+    }
+
+    public int getDeletions() {
+        return deletions;
+    }
+
+    public void setDeletions(int deletions) {
+        this.deletions = deletions;
+    }
+}
@@ -0,0 +1,62 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GitDiffDto {
+    private String base;
+    private String head;
+    private List<GitDiffFileDto> files = new ArrayList<>();
+    private int additions;
+    private int deletions;
+
+    public GitDiffDto() {}
+
+    public GitDiffDto(String base, String head, List<GitDiffFileDto> files) {
+        this.base = base;
+        this.head = head;
+        setFiles(files);
+    }
+
+    public String getBase() {
+        return base;
+    }
+
+    public void setBase(String base) {
+        this.base = base;
+    }
+
+    public String getHead() {
+        return head;
+    }
+
+    public void setHead(String head) {
+        this.head = head;
+    }
+
+    public List<GitDiffFileDto> getFiles() {
+        return files;
+    }
+
+    public void setFiles(List<GitDiffFileDto> files) {
+        this.files = files != null ? files : new ArrayList<>();
+        this.additions = this.files.stream().mapToInt(GitDiffFileDto::getAdditions).sum();
+        this.deletions = this.files.stream().mapToInt(GitDiffFileDto::getDeletions).sum();
+    }
+
+    public int getAdditions() {
+        return additions;
+    }
+
+    public void setAdditions(int additions) {
+        this.additions = additions;
+    }
+
+    public int getDeletions() {
+        return deletions;
+    }
+
+    public void setDeletions(int deletions) {
+        this.deletions = deletions;
+    }
+}
@@ -0,0 +1,69 @@
+package ru.backend.rest.git.dto;
+
+public class GitDiffFileDto {
+    private String changeType;
+    private String oldPath;
+    private String newPath;
+    private int additions;
+    private int deletions;
+    private boolean binary;
+
+    public GitDiffFileDto() {}
+
+    public GitDiffFileDto(String changeType, String oldPath, String newPath, int additions, int deletions, boolean binary) {
+        this.changeType = changeType;
+        this.oldPath = oldPath;
+        this.newPath = newPath;
+        this.additions = additions;
+        this.deletions = deletions;
+        this.binary = binary;
+    }
+
+    public String getChangeType() {
+        return changeType;
+    }
+
+    public void setChangeType(String changeType) {
+        this.changeType = changeType;
+    }
+
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    public void setOldPath(String oldPath) {
+        this.oldPath = oldPath;
+    }
+
+    public String getNewPath() {
+        return newPath;
+    }
+
+    public void setNewPath(String newPath) {
+        this.newPath = newPath;
+    }
+
+    public int getAdditions() {
+        return additions;
+    }
+
+    public void setAdditions(int additions) {
+        this.additions = additions;
+    }
+
+    public int getDeletions() {
+        return deletions;
+    }
+
+    public void setDeletions(int deletions) {
+        this.deletions = deletions;
+    }
+
+    public boolean isBinary() {
+        return binary;
+    }
+
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+}
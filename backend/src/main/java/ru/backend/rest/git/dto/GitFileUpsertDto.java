@@ -0,0 +1,29 @@
+package ru.backend.rest.git.dto;
+
+public class GitFileUpsertDto {
+    private String path;
+    private String content;
+
+    public GitFileUpsertDto() {}
+
+    public GitFileUpsertDto(String path, String content) {
+        this.path = path;
+        this.content = content;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(String content) {
+        this.content = content;
+    }
+}
@@ -0,0 +1,78 @@
+package ru.backend.rest.git.dto;
+
+public class GitMirrorStatsDto {
+    private String repoUrl;
+    private String directory;
+    private long sizeBytes;
+    private int packCount;
+    private int looseObjects;
+    private boolean bitmap;
+    private long lastAccess;
+    private long lastFetch;
+
+    public GitMirrorStatsDto() {}
+
+    public String getRepoUrl() {
+        return repoUrl;
+    }
+
+    public void setRepoUrl(String repoUrl) {
+        this.repoUrl = repoUrl;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    public void setSizeBytes(long sizeBytes) {
+        this.sizeBytes = sizeBytes;
+    }
+
+    public int getPackCount() {
+        return packCount;
+    }
+
+    public void setPackCount(int packCount) {
+        this.packCount = packCount;
+    }
+
+    public int getLooseObjects() {
+        return looseObjects;
+    }
+
+    public void setLooseObjects(int looseObjects) {
+        this.looseObjects = looseObjects;
+    }
+
+    public boolean isBitmap() {
+        return bitmap;
+    }
+
+    public void setBitmap(boolean bitmap) {
+        this.bitmap = bitmap;
+    }
+
+    public long getLastAccess() {
+        return lastAccess;
+    }
+
+    public void setLastAccess(long lastAccess) {
+        this.lastAccess = lastAccess;
+    }
+
+    public long getLastFetch() {
+        return lastFetch;
+    }
+
+    public void setLastFetch(long lastFetch) {
+        this.lastFetch = lastFetch;
+    }
+}
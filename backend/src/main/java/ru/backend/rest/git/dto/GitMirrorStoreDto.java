@@ -0,0 +1,42 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GitMirrorStoreDto {
+    private long maxBytes;
+    private long totalBytes;
+    private List<GitMirrorStatsDto> mirrors = new ArrayList<>();
+
+    public GitMirrorStoreDto() {}
+
+    public GitMirrorStoreDto(long maxBytes, List<GitMirrorStatsDto> mirrors) {
+        this.maxBytes = maxBytes;
+        setMirrors(mirrors);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public void setTotalBytes(long totalBytes) {
+        this.totalBytes = totalBytes;
+    }
+
+    public List<GitMirrorStatsDto> getMirrors() {
+        return mirrors;
+    }
+
+    public void setMirrors(List<GitMirrorStatsDto> mirrors) {
+        this.mirrors = mirrors != null ? mirrors : new ArrayList<>();
+        this.totalBytes = this.mirrors.stream().mapToLong(GitMirrorStatsDto::getSizeBytes).sum();
+    }
+}
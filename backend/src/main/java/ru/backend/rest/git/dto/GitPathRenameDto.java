@@ -0,0 +1,29 @@
+package ru.backend.rest.git.dto;
+
+public class GitPathRenameDto {
+    private String oldPath;
+    private String newPath;
+
+    public GitPathRenameDto() {}
+
+    public GitPathRenameDto(String oldPath, String newPath) {
+        this.oldPath = oldPath;
+        this.newPath = newPath;
+    }
+
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    public void setOldPath(String oldPath) {
+        this.oldPath = oldPath;
+    }
+
+    public String getNewPath() {
+        return newPath;
+    }
+
+    public void setNewPath(String newPath) {
+        this.newPath = newPath;
+    }
+}
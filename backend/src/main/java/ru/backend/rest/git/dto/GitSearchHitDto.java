@@ -0,0 +1,59 @@
+package ru.backend.rest.git.dto;
+
+public class GitSearchHitDto {
+    private String repo;
+    private String branch;
+    private String path;
+    private int line;
+    private String text;
+
+    public GitSearchHitDto() {}
+
+    public GitSearchHitDto(String repo, String branch, String path, int line, String text) {
+        this.repo = repo;
+        this.branch = branch;
+        this.path = path;
+        this.line = line;
+        this.text = text;
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public void setRepo(String repo) {
+        this.repo = repo;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public void setPath(String path) {
+        this.path = path;
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public void setLine(int line) {
+        this.line = line;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+}
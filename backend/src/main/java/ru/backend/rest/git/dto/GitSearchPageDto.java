@@ -0,0 +1,32 @@
+package ru.backend.rest.git.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class GitSearchPageDto {
+    private List<GitSearchHitDto> items = new ArrayList<>();
+    private Integer nextOffset;
+
+    public GitSearchPageDto() {}
+
+    public GitSearchPageDto(List<GitSearchHitDto> items, Integer nextOffset) {
+        this.items = items != null ? items : new ArrayList<>();
+        this.nextOffset = nextOffset;
+    }
+
+    public List<GitSearchHitDto> getItems() {
+        return items;
+    }
+
+    public void setItems(List<GitSearchHitDto> items) {
+        this.items = items != null ? items : new ArrayList<>();
+    }
+
+    public Integer getNextOffset() {
+        return nextOffset;
+    }
+
+    public void setNextOffset(Integer nextOffset) {
+        this.nextOffset = nextOffset;
+    }
+}
@@ -0,0 +1,52 @@
+package ru.backend.rest.git.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class GitWebhookResultDto {
+    private String repo;
+    private String branch;
+    private String commit;
+    private Map<String, String> applications = new LinkedHashMap<>();
+
+    public GitWebhookResultDto() {}
+
+    public GitWebhookResultDto(String repo, String branch, String commit, Map<String, String> applications) {
+        this.repo = repo;
+        this.branch = branch;
+        this.commit = commit;
+        this.applications = applications != null ? applications : new LinkedHashMap<>();
+    }
+
+    public String getRepo() {
+        return repo;
+    }
+
+    public void setRepo(String repo) {
+        this.repo = repo;
+    }
+
+    public String getBranch() {
+        return branch;
+    }
+
+    public void setBranch(String branch) {
+        this.branch = branch;
+    }
+
+    public String getCommit() {
+        return commit;
+    }
+
+    public void setCommit(String commit) {
+        this.commit = commit;
+    }
+
+    public Map<String, String> getApplications() {
+        return applications;
+    }
+
+    public void setApplications(Map<String, String> applications) {
+        this.applications = applications != null ? applications : new LinkedHashMap<>();
+    }
+}
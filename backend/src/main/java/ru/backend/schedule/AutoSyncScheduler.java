@@ -1,26 +1,387 @@
 package ru.backend.schedule;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import ru.backend.rest.application.dto.ApplicationDto;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
 import ru.backend.service.application.ApplicationService;
+import ru.backend.service.application.SyncStrategy;
+import ru.backend.service.git.GitRefCache;
+import ru.backend.service.git.GitService;
+import ru.backend.service.git.GitWebhookService;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Авто-синхронизация приложений на хешированном колесе таймеров. У каждого приложения свой
+ * интервал из {@code syncStrategy} ({@code auto:30s}); первая проверка ставится в точку периода,
+ * зависящую от имени приложения, следующие — через интервал ± джиттер, поэтому проверки
+ * равномерно размазаны по времени и не собираются на границах минут.
+ * <p>
+ * Приложения, наступившие в одном тике, группируются по URL репозитория: на группу один снимок
+ * веток из кэша ls-remote. Группы проверяются параллельно на ограниченном пуле с дедлайном от
+ * старта проверки; если прошлая проверка репозитория ещё идёт, приложение ждёт следующего
+ * интервала. Репозитории с живым push-вебхуком опрашиваются только раз в
+ * {@code sync.auto.webhook-fallback-ms}.
+ * <p>
+ * Колесо крутит собственный поток с фиксированной паузой между тиками, а не общий поток
+ * {@code @Scheduled}: задержка соседних задач не копит пропущенные тики, которые потом
+ * выстреливают подряд.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class AutoSyncScheduler {
 
+    private static final double JITTER = 0.1;
+    private static final long RECONCILE_MILLIS = 5000;
+
     private final ApplicationService applicationService;
+    private final GitService gitService;
+    private final GitRefCache refCache;
+    private final GitWebhookService webhookService;
+    private final long defaultIntervalMillis;
+    private final long minIntervalMillis;
+    private final long appTimeoutMillis;
+    private final long webhookFallbackMillis;
+    private final long wheelTickMillis;
+
+    private final TimingWheel<String> wheel;
+    private final ScheduledExecutorService ticker;
+    private final Map<String, ScheduledApp> scheduled = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final ScheduledExecutorService deadlines;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Map<String, Long> lastPolled = new ConcurrentHashMap<>();
+
+    private final MeterRegistry registry;
+    private final Timer checkTimer;
+    private final Map<String, LongAdder> summary = new ConcurrentHashMap<>();
+    private long nextReconcile;
+    private long nextSummary;
+
+    public AutoSyncScheduler(ApplicationService applicationService,
+                             GitService gitService,
+                             GitRefCache refCache,
+                             GitWebhookService webhookService,
+                             MeterRegistry registry,
+                             @Value("${sync.auto.interval-ms:60000}") long defaultIntervalMillis,
+                             @Value("${sync.auto.min-interval-ms:10000}") long minIntervalMillis,
+                             @Value("${sync.auto.parallelism:16}") int parallelism,
+                             @Value("${sync.auto.app-timeout-ms:20000}") long appTimeoutMillis,
+                             @Value("${sync.auto.webhook-fallback-ms:900000}") long webhookFallbackMillis,
+                             @Value("${sync.auto.wheel-tick-ms:1000}") long wheelTickMillis,
+                             @Value("${sync.auto.wheel-size:4096}") int wheelSize) {
+        // ls-remote должен упасть по своему таймауту раньше, чем дедлайн прервёт поток приложения
+        if (refCache.getTimeoutSeconds() * 1000L >= appTimeoutMillis) {
+            throw new IllegalArgumentException("git.refs.timeout-s (" + refCache.getTimeoutSeconds()
+                    + " с) должен быть меньше sync.auto.app-timeout-ms (" + appTimeoutMillis + " мс)");
+        }
+        this.applicationService = applicationService;
+        this.gitService = gitService;
+        this.refCache = refCache;
+        this.webhookService = webhookService;
+        this.defaultIntervalMillis = defaultIntervalMillis;
+        this.minIntervalMillis = minIntervalMillis;
+        this.appTimeoutMillis = appTimeoutMillis;
+        this.webhookFallbackMillis = webhookFallbackMillis;
+        this.wheelTickMillis = wheelTickMillis;
+        this.registry = registry;
+        this.wheel = new TimingWheel<>(wheelTickMillis, wheelSize, System.currentTimeMillis());
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "auto-sync-wheel");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.workers = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> {
+            Thread thread = new Thread(runnable, "auto-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ScheduledThreadPoolExecutor deadlineTimer = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "auto-sync-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deadlineTimer.setRemoveOnCancelPolicy(true);
+        this.deadlines = deadlineTimer;
+        this.checkTimer = Timer.builder("sync.auto.check")
+                .description("Длительность проверки репозитория авто-синхронизацией")
+                .register(registry);
+        Gauge.builder("sync.auto.scheduled", scheduled, Map::size)
+                .description("Приложения в расписании авто-синхронизации")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        ticker.scheduleWithFixedDelay(() -> {
+            try {
+                tick();
+            } catch (RuntimeException e) {
+                // Исключение из задачи остановило бы колесо насовсем
+                log.warn("Авто-синхронизация: ошибка тика: {}", e.getMessage());
+            }
+        }, wheelTickMillis, wheelTickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void tick() {
+        long now = System.currentTimeMillis();
+        if (now >= nextReconcile) {
+            reconcile();
+            nextReconcile = now + RECONCILE_MILLIS;
+        }
+        List<String> due = wheel.advance(now);
+        if (!due.isEmpty()) {
+            runDue(due, now);
+        }
+        if (now >= nextSummary) {
+            logSummary();
+            nextSummary = now + defaultIntervalMillis;
+        }
+    }
 
-    @Scheduled(fixedRate = 60000)
-    public void syncAutoApps() {
+    /**
+     * Сверяет расписание со списком приложений: новые и сменившие интервал ставятся в колесо,
+     * удалённые и переведённые в manual снимаются.
+     */
+    private void reconcile() {
+        Set<String> active = new HashSet<>();
         for (ApplicationDto app : applicationService.getAll()) {
-            if ("auto".equalsIgnoreCase(app.getSyncStrategy())) {
-                String status = applicationService.recheckStatus(app.getName());
-                log.info("Авто-синхронизация [{}]: {}", app.getName(), status);
+            if (!SyncStrategy.isAuto(app.getSyncStrategy())) {
+                continue;
+            }
+            String name = app.getName();
+            long interval;
+            try {
+                interval = Math.max(minIntervalMillis, SyncStrategy.intervalMillis(app.getSyncStrategy(), defaultIntervalMillis));
+            } catch (IllegalArgumentException e) {
+                log.warn("Авто-синхронизация [{}]: {}", name, e.getMessage());
+                continue;
+            }
+            active.add(name);
+            // Проверка и замена — одна операция над ключом: параллельный reschedule из завершившейся
+            // проверки не оставит в колесе второй таймаут того же приложения
+            scheduled.compute(name, (key, current) -> {
+                if (current != null && current.interval() == interval) {
+                    return current;
+                }
+                if (current != null) {
+                    current.timeout().cancel();
+                }
+                // Первая проверка — в точке периода по хешу имени, так приложения не стартуют разом и после рестарта
+                return new ScheduledApp(interval, wheel.schedule(name, spread(name, interval)));
+            });
+        }
+        for (String name : scheduled.keySet()) {
+            if (!active.contains(name)) {
+                scheduled.computeIfPresent(name, (key, current) -> {
+                    current.timeout().cancel();
+                    return null;
+                });
+            }
+        }
+        lastPolled.keySet().retainAll(gitService.getAll().stream()
+                .map(GitConnectionRequestDto::getRepoUrl)
+                .collect(Collectors.toSet()));
+    }
+
+    private void runDue(List<String> due, long now) {
+        Map<String, RepoCheck> checks = new LinkedHashMap<>();
+        for (String name : due) {
+            ApplicationDto app;
+            try {
+                app = applicationService.getByName(name);
+            } catch (NoSuchElementException e) {
+                scheduled.remove(name);
+                continue;
+            }
+            try {
+                GitConnectionRequestDto repo = gitService.getByName(app.getRepoName());
+                checks.computeIfAbsent(repo.getRepoUrl(), url -> new RepoCheck(repo)).apps.add(name);
+            } catch (NoSuchElementException e) {
+                log.warn("Авто-синхронизация [{}]: репозиторий {} не найден", name, app.getRepoName());
+                record(applicationService.applyBranches(name, null), 1);
+                reschedule(name);
             }
         }
+
+        for (RepoCheck check : checks.values()) {
+            String url = check.repo.getRepoUrl();
+            if (isEventDriven(check.repo, now)) {
+                record("webhook", check.apps.size());
+                check.apps.forEach(this::reschedule);
+            } else if (!inFlight.add(url)) {
+                record("skipped", check.apps.size());
+                check.apps.forEach(this::reschedule);
+            } else {
+                lastPolled.put(url, now);
+                submit(check).whenComplete((statuses, error) -> {
+                    outcomesOf(check, statuses, error).values().forEach(outcome -> record(outcome, 1));
+                    check.apps.forEach(this::reschedule);
+                });
+            }
+        }
+    }
+
+    private void reschedule(String name) {
+        scheduled.computeIfPresent(name, (key, current) -> {
+            current.timeout().cancel();
+            return new ScheduledApp(current.interval(), wheel.schedule(name, withJitter(current.interval())));
+        });
+    }
+
+    /**
+     * Репозиторий с живым вебхуком опрашивается только как страховка от потерянных событий.
+     */
+    private boolean isEventDriven(GitConnectionRequestDto repo, long now) {
+        if (now - webhookService.getLastDelivery(repo) >= webhookFallbackMillis) {
+            return false;
+        }
+        return now - lastPolled.getOrDefault(repo.getRepoUrl(), 0L) < webhookFallbackMillis;
+    }
+
+    private CompletableFuture<Map<String, String>> submit(RepoCheck check) {
+        String url = check.repo.getRepoUrl();
+        CompletableFuture<Map<String, String>> result = new CompletableFuture<>();
+        try {
+            workers.execute(() -> {
+                // Дедлайн отсчитывается от старта проверки, а не от постановки в очередь. По нему
+                // проверка прерывается, чтобы зависший ls-remote не занимал поток пула
+                Thread worker = Thread.currentThread();
+                ScheduledFuture<?> deadline = deadlines.schedule(() -> {
+                    synchronized (result) {
+                        if (result.completeExceptionally(new TimeoutException())) {
+                            worker.interrupt();
+                        }
+                    }
+                }, appTimeoutMillis, TimeUnit.MILLISECONDS);
+                long started = System.nanoTime();
+                try {
+                    Map<String, ObjectId> branches = null;
+                    try {
+                        branches = refCache.getBranches(check.repo);
+                    } catch (Exception e) {
+                        log.warn("Авто-синхронизация: ls-remote {} не удался: {}", url, e.getMessage());
+                    }
+                    Map<String, String> statuses = new LinkedHashMap<>();
+                    for (String name : check.apps) {
+                        if (result.isDone()) {
+                            // Проверка уже засчитана как timeout — не перетираем статусы запоздалым ответом
+                            break;
+                        }
+                        statuses.put(name, applicationService.applyBranches(name, branches));
+                    }
+                    result.complete(statuses);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                } finally {
+                    deadline.cancel(false);
+                    synchronized (result) {
+                        // Прерывание, пришедшее после завершения работы, не должно достаться следующей задаче
+                        Thread.interrupted();
+                    }
+                    checkTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    inFlight.remove(url);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(url);
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private Map<String, String> outcomesOf(RepoCheck check, Map<String, String> statuses, Throwable error) {
+        if (error == null) {
+            statuses.forEach((name, status) -> {
+                if ("Error".equals(status)) {
+                    log.warn("Авто-синхронизация [{}]: ошибка проверки", name);
+                }
+            });
+            return statuses;
+        }
+        String failure;
+        if (error instanceof TimeoutException) {
+            log.warn("Авто-синхронизация {}: не уложилась в {} мс, приложения: {}",
+                    check.repo.getRepoUrl(), appTimeoutMillis, check.apps);
+            failure = "timeout";
+        } else {
+            log.warn("Авто-синхронизация {}: {}", check.repo.getRepoUrl(), error.getMessage());
+            failure = "Error";
+        }
+        Map<String, String> outcomes = new LinkedHashMap<>();
+        check.apps.forEach(name -> outcomes.put(name, failure));
+        return outcomes;
+    }
+
+    private void record(String outcome, int apps) {
+        String result = outcome.toLowerCase().replace(' ', '_');
+        registry.counter("sync.auto.apps", "result", result).increment(apps);
+        summary.computeIfAbsent(result, key -> new LongAdder()).add(apps);
+    }
+
+    private void logSummary() {
+        Map<String, Long> counts = new TreeMap<>();
+        summary.forEach((result, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) counts.put(result, count);
+        });
+        if (!counts.isEmpty()) {
+            log.info("Авто-синхронизация: в расписании {} приложений, проверки за период: {}", scheduled.size(), counts);
+        }
+    }
+
+    private static long spread(String name, long interval) {
+        long hash = name.hashCode() * 0x9E3779B97F4A7C15L;
+        return Math.floorMod(hash ^ (hash >>> 29), interval);
+    }
+
+    private static long withJitter(long interval) {
+        return Math.max(1, (long) (interval * (1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER))));
+    }
+
+    private record ScheduledApp(long interval, TimingWheel.Timeout<String> timeout) {
+    }
+
+    private static class RepoCheck {
+        final GitConnectionRequestDto repo;
+        final List<String> apps = new ArrayList<>();
+
+        RepoCheck(GitConnectionRequestDto repo) {
+            this.repo = repo;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        ticker.shutdownNow();
+        workers.shutdownNow();
+        deadlines.shutdownNow();
     }
 }
@@ -0,0 +1,162 @@
+package ru.backend.schedule;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.service.git.GitMirrorService;
+import ru.backend.service.git.GitService;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Фоновое обновление зеркал всех подключённых репозиториев. Интервал подбирается для
+ * каждого репозитория отдельно: частые изменения и недавние чтения сжимают его до
+ * {@code min-interval-ms}, простой растягивает до {@code max-interval-ms}. Недоступные
+ * remote откладываются с экспоненциальной задержкой.
+ */
+@Slf4j
+@Component
+public class MirrorFetchScheduler {
+
+    private static final double JITTER = 0.2;
+    private static final int MAX_BACKOFF_SHIFT = 20;
+
+    private final GitService gitService;
+    private final GitMirrorService mirrorService;
+    private final boolean enabled;
+    private final long minInterval;
+    private final long maxInterval;
+    private final long idleAfter;
+    private final long maxBackoff;
+
+    private final Map<String, FetchState> states = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final ExecutorService fetchers;
+    private final Counter unchanged;
+    private final Counter changed;
+    private final Counter failed;
+
+    public MirrorFetchScheduler(GitService gitService,
+                                GitMirrorService mirrorService,
+                                MeterRegistry registry,
+                                @Value("${git.mirror.background.enabled:true}") boolean enabled,
+                                @Value("${git.mirror.background.min-interval-ms:3000}") long minInterval,
+                                @Value("${git.mirror.background.max-interval-ms:600000}") long maxInterval,
+                                @Value("${git.mirror.background.idle-after-ms:1800000}") long idleAfter,
+                                @Value("${git.mirror.background.max-backoff-ms:1800000}") long maxBackoff,
+                                @Value("${git.mirror.background.concurrency:4}") int concurrency) {
+        this.gitService = gitService;
+        this.mirrorService = mirrorService;
+        this.enabled = enabled;
+        this.minInterval = Math.max(1, minInterval);
+        this.maxInterval = Math.max(this.minInterval, maxInterval);
+        this.idleAfter = idleAfter;
+        this.maxBackoff = Math.max(this.minInterval, maxBackoff);
+        this.permits = new Semaphore(Math.max(1, concurrency));
+        this.fetchers = Executors.newFixedThreadPool(Math.max(1, concurrency), runnable -> {
+            Thread thread = new Thread(runnable, "git-mirror-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.unchanged = fetchCounter(registry, "unchanged");
+        this.changed = fetchCounter(registry, "changed");
+        this.failed = fetchCounter(registry, "failed");
+    }
+
+    private static Counter fetchCounter(MeterRegistry registry, String result) {
+        return Counter.builder("git.mirror.background.fetches")
+                .description("Фоновые fetch зеркал по результату")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    @Scheduled(fixedDelayString = "${git.mirror.background.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Set<String> registered = new HashSet<>();
+        for (GitConnectionRequestDto repo : gitService.getAll()) {
+            registered.add(repo.getRepoUrl());
+            // Первый fetch размазан по минимальному интервалу, чтобы после старта не ходить во все remote разом
+            FetchState state = states.computeIfAbsent(repo.getRepoUrl(),
+                    k -> new FetchState(now + ThreadLocalRandom.current().nextLong(minInterval), minInterval));
+            if (state.running || now < state.nextFetchAt) {
+                continue;
+            }
+            if (!permits.tryAcquire()) {
+                break;
+            }
+            state.running = true;
+            fetchers.execute(() -> fetch(repo, state));
+        }
+        states.keySet().retainAll(registered);
+    }
+
+    private void fetch(GitConnectionRequestDto repo, FetchState state) {
+        try {
+            boolean moved = mirrorService.fetchInBackground(repo);
+            (moved ? changed : unchanged).increment();
+            state.failures = 0;
+            state.changeInterval = moved
+                    ? Math.max(minInterval, state.changeInterval / 2)
+                    : Math.min(maxInterval, state.changeInterval + state.changeInterval / 2);
+            long now = System.currentTimeMillis();
+            state.nextFetchAt = now + withJitter(effectiveInterval(repo, state.changeInterval, now));
+        } catch (Exception e) {
+            failed.increment();
+            state.failures++;
+            long backoff = Math.min(maxBackoff, minInterval << Math.min(state.failures, MAX_BACKOFF_SHIFT));
+            state.nextFetchAt = System.currentTimeMillis() + withJitter(backoff);
+            log.warn("Фоновый fetch {} не удался ({} подряд), повтор через {} мс: {}",
+                    repo.getRepoUrl(), state.failures, backoff, e.getMessage());
+        } finally {
+            state.running = false;
+            permits.release();
+        }
+    }
+
+    private long effectiveInterval(GitConnectionRequestDto repo, long changeInterval, long now) {
+        long sinceAccess = now - mirrorService.getLastAccess(repo);
+        if (sinceAccess > idleAfter) {
+            return maxInterval;
+        }
+        // Зеркало, которое читали секунды назад, обновляется раз в несколько секунд
+        return Math.min(changeInterval, Math.max(minInterval, sinceAccess));
+    }
+
+    private long withJitter(long interval) {
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-JITTER, JITTER);
+        return Math.max(1, (long) (interval * factor));
+    }
+
+    @PreDestroy
+    public void close() {
+        fetchers.shutdownNow();
+    }
+
+    private static class FetchState {
+        volatile long nextFetchAt;
+        volatile long changeInterval;
+        volatile int failures;
+        volatile boolean running;
+
+        FetchState(long nextFetchAt, long changeInterval) {
+            this.nextFetchAt = nextFetchAt;
+            this.changeInterval = changeInterval;
+        }
+    }
+}
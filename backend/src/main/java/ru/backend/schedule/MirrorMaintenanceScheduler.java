@@ -0,0 +1,61 @@
+package ru.backend.schedule;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.backend.rest.git.dto.GitMirrorStoreDto;
+import ru.backend.service.git.GitMirrorStore;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Периодический gc и квота зеркал. Обслуживание сотен зеркал идёт минутами, поэтому оно
+ * выполняется в собственном потоке: общий поток планировщика Spring остаётся свободным
+ * для тиков фонового fetch, авто-синхронизации и мониторинга серверов.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MirrorMaintenanceScheduler {
+
+    private final GitMirrorStore mirrorStore;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final ExecutorService maintainer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "git-mirror-maintenance");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Scheduled(initialDelayString = "${git.mirror.store.maintenance-initial-delay-ms:300000}",
+            fixedDelayString = "${git.mirror.store.maintenance-interval-ms:3600000}")
+    public void maintainMirrors() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Обслуживание зеркал ещё идёт, запуск пропущен");
+            return;
+        }
+        try {
+            maintainer.execute(() -> {
+                try {
+                    GitMirrorStoreDto stats = mirrorStore.maintain();
+                    log.info("Обслуживание зеркал: {} зеркал, {} из {} байт", stats.getMirrors().size(), stats.getTotalBytes(), stats.getMaxBytes());
+                } catch (Exception e) {
+                    log.warn("Ошибка обслуживания зеркал: {}", e.getMessage());
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RuntimeException e) {
+            running.set(false);
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        maintainer.shutdownNow();
+    }
+}
@@ -0,0 +1,99 @@
+package ru.backend.schedule;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Хешированное колесо таймеров: задача кладётся в слот {@code deadlineTick % размер} за O(1),
+ * каждый тик просматривается только один слот. Задачи с дедлайном дальше одного оборота
+ * остаются в слоте до своего оборота.
+ */
+public class TimingWheel<T> {
+
+    private final long tickMillis;
+    private final long startMillis;
+    private final ArrayDeque<Timeout<T>>[] slots;
+    private final int mask;
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public TimingWheel(long tickMillis, int wheelSize, long startMillis) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Шаг и размер колеса должны быть положительными");
+        }
+        int slotCount = Integer.highestOneBit(wheelSize - 1) << 1;
+        this.tickMillis = tickMillis;
+        this.startMillis = startMillis;
+        this.slots = new ArrayDeque[Math.max(1, slotCount)];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.mask = slots.length - 1;
+    }
+
+    public synchronized Timeout<T> schedule(T task, long delayMillis) {
+        long ticks = Math.max(1, (delayMillis + tickMillis - 1) / tickMillis);
+        Timeout<T> timeout = new Timeout<>(task, currentTick + ticks);
+        slots[(int) (timeout.deadlineTick & mask)].add(timeout);
+        size++;
+        return timeout;
+    }
+
+    /**
+     * Сдвигает колесо до момента {@code nowMillis} и возвращает наступившие задачи.
+     * Пропущенные тики (пауза планировщика) догоняются, но не больше одного оборота.
+     */
+    public synchronized List<T> advance(long nowMillis) {
+        long targetTick = (nowMillis - startMillis) / tickMillis;
+        List<T> due = new ArrayList<>();
+        if (targetTick <= currentTick) {
+            return due;
+        }
+        long from = Math.max(currentTick + 1, targetTick - slots.length + 1);
+        for (long tick = from; tick <= targetTick; tick++) {
+            Iterator<Timeout<T>> iterator = slots[(int) (tick & mask)].iterator();
+            while (iterator.hasNext()) {
+                Timeout<T> timeout = iterator.next();
+                if (timeout.cancelled) {
+                    iterator.remove();
+                    size--;
+                } else if (timeout.deadlineTick <= targetTick) {
+                    iterator.remove();
+                    size--;
+                    due.add(timeout.task);
+                }
+            }
+        }
+        currentTick = targetTick;
+        return due;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public static final class Timeout<T> {
+        private final T task;
+        private final long deadlineTick;
+        private volatile boolean cancelled;
+
+        private Timeout(T task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+
+        /**
+         * Отменённая задача удаляется из слота, когда колесо до него дойдёт.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
@@ -4,26 +4,28 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import ru.backend.rest.application.dto.ApplicationDto;
 import ru.backend.rest.git.dto.GitConnectionRequestDto;
 import ru.backend.rest.ws.WebSocketStatusController;
+import ru.backend.service.git.GitRefCache;
 import ru.backend.service.git.GitService;
 
 import java.io.File;
-import java.nio.file.Files;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
+@Slf4j
 @Service
 public class ApplicationService {
 
     private final GitService gitService;
+    private final GitRefCache refCache;
     private final WebSocketStatusController statusController;
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final File storageFile;
@@ -31,9 +33,11 @@ public class ApplicationService {
     private final Map<String, ApplicationDto> applicationStorage = new ConcurrentHashMap<>();
 
     public ApplicationService(GitService gitService,
+                              GitRefCache refCache,
                               WebSocketStatusController statusController,
                               @Value("${storage.base-dir}") String baseDirPath) {
         this.gitService = gitService;
+        this.refCache = refCache;
         this.statusController = statusController;
         File baseDir = new File(resolvePath(baseDirPath));
         if (!baseDir.exists()) {
@@ -61,7 +65,7 @@ public class ApplicationService {
     }
 
     @PreDestroy
-    public void saveToDisk() {
+    public synchronized void saveToDisk() {
         try {
             List<ApplicationDto> list = new ArrayList<>(applicationStorage.values());
             objectMapper.writerWithDefaultPrettyPrinter().writeValue(storageFile, list);
@@ -74,6 +78,14 @@ public class ApplicationService {
         return new ArrayList<>(applicationStorage.values());
     }
 
+    public ApplicationDto getByName(String name) {
+        ApplicationDto app = applicationStorage.get(name);
+        if (app == null) {
+            throw new NoSuchElementException("Application not found: " + name);
+        }
+        return app;
+    }
+
     public void save(ApplicationDto app) {
         if (applicationStorage.containsKey(app.getName())) {
             throw new IllegalArgumentException("Приложение с таким именем уже существует: " + app.getName());
@@ -87,6 +99,7 @@ public class ApplicationService {
         if (app.getStatus() == null) {
             app.setStatus("Not Synced");
         }
+        SyncStrategy.validate(app.getSyncStrategy());
 
         applicationStorage.put(app.getName(), app);
         saveToDisk();
@@ -97,45 +110,68 @@ public class ApplicationService {
         saveToDisk();
     }
 
+    /**
+     * Статус синхронизации: последний задеплоенный коммит сравнивается с вершиной ветки
+     * из кэша ls-remote, без клонирования репозитория.
+     */
     public String recheckStatus(String name) {
         ApplicationDto app = applicationStorage.get(name);
         if (app == null) return "Unknown";
 
+        Map<String, ObjectId> branches = null;
         try {
-            GitConnectionRequestDto repo = gitService.getByName(app.getRepoName());
-
-            File tempDir = Files.createTempDirectory("status-check").toFile();
-
-            Git git = Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setBranch(app.getBranch())
-                    .setDirectory(tempDir)
-                    .setCredentialsProvider(new UsernamePasswordCredentialsProvider(repo.getUsername(), repo.getToken()))
-                    .call();
-
-            String localHead = git.getRepository().resolve("HEAD").getName();
-            String remoteHead = Git.lsRemoteRepository()
-                    .setRemote(repo.getRepoUrl())
-                    .setCredentialsProvider(new UsernamePasswordCredentialsProvider(repo.getUsername(), repo.getToken()))
-                    .call()
-                    .stream()
-                    .filter(ref -> ref.getName().endsWith("/" + app.getBranch()))
-                    .findFirst()
-                    .map(ref -> ref.getObjectId().getName())
-                    .orElse(null);
-
-            String status = localHead.equals(remoteHead) ? "Synced" : "Out of Sync";
-            app.setStatus(status);
-            statusController.sendStatus(app);
-            saveToDisk();
-            return status;
-
+            branches = refCache.getBranches(gitService.getByName(app.getRepoName()));
         } catch (Exception e) {
-            app.setStatus("Error");
-            statusController.sendStatus(app);
+            log.warn("Ошибка проверки статуса приложения {}: {}", name, e.getMessage());
+        }
+        return applyBranches(name, branches);
+    }
+
+    /**
+     * Статус по готовому снимку веток репозитория. Авто-синхронизация делает один ls-remote
+     * на репозиторий и оценивает по нему все приложения этого репозитория.
+     *
+     * @param branches ветки репозитория; {@code null}, если remote недоступен
+     */
+    public String applyBranches(String name, Map<String, ObjectId> branches) {
+        ApplicationDto app = applicationStorage.get(name);
+        if (app == null) return "Unknown";
+
+        String status;
+        String remoteCommit = app.getRemoteCommit();
+        ObjectId remoteHead = branches != null ? branches.get(app.getBranch()) : null;
+        if (branches == null) {
+            status = "Error";
+        } else if (remoteHead == null) {
+            log.warn("Ветка {} не найдена в репозитории приложения {}", app.getBranch(), name);
+            status = "Error";
+        } else {
+            remoteCommit = remoteHead.name();
+            status = app.getDeployedCommit() == null ? "Not Synced"
+                    : remoteCommit.equals(app.getDeployedCommit()) ? "Synced"
+                    : "Out of Sync";
+        }
+
+        boolean changed = !status.equals(app.getStatus()) || !Objects.equals(remoteCommit, app.getRemoteCommit());
+        app.setStatus(status);
+        app.setRemoteCommit(remoteCommit);
+        statusController.sendStatus(app);
+        if (changed) {
             saveToDisk();
-            return "Error";
         }
+        return status;
+    }
+
+    /**
+     * Фиксирует коммит, который сейчас развёрнут на сервере.
+     */
+    public void markDeployed(String name, String commitId) {
+        ApplicationDto app = applicationStorage.get(name);
+        if (app == null) {
+            throw new NoSuchElementException("Application not found: " + name);
+        }
+        app.setDeployedCommit(commitId);
+        saveToDisk();
     }
 
     public void update(String name, ApplicationDto update) {
@@ -143,6 +179,7 @@ public class ApplicationService {
         if (existing == null) {
             throw new NoSuchElementException("Application not found: " + name);
         }
+        SyncStrategy.validate(update.getSyncStrategy());
 
         if (isNotBlank(update.getRepoName())) existing.setRepoName(update.getRepoName());
         if (isNotBlank(update.getBranch())) existing.setBranch(update.getBranch());
@@ -151,6 +188,7 @@ public class ApplicationService {
         if (isNotBlank(update.getServerName())) existing.setServerName(update.getServerName());
         if (isNotBlank(update.getSyncStrategy())) existing.setSyncStrategy(update.getSyncStrategy());
         if (isNotBlank(update.getStatus())) existing.setStatus(update.getStatus());
+        if (isNotBlank(update.getDeployedCommit())) existing.setDeployedCommit(update.getDeployedCommit());
 
         applicationStorage.put(name, existing);
         saveToDisk();
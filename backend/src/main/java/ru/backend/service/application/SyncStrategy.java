@@ -0,0 +1,51 @@
+package ru.backend.service.application;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Разбор {@code syncStrategy} приложения: {@code manual}, {@code auto} (интервал по умолчанию)
+ * или {@code auto:<интервал>} — например {@code auto:30s}, {@code auto:5m}, {@code auto:1h};
+ * число без единицы означает секунды.
+ */
+public final class SyncStrategy {
+
+    private static final String AUTO_PREFIX = "auto";
+    private static final Pattern AUTO = Pattern.compile("auto(?::(\\d{1,9})([smh]?))?");
+
+    private SyncStrategy() {
+    }
+
+    public static boolean isAuto(String strategy) {
+        return strategy != null && AUTO.matcher(strategy.trim().toLowerCase(Locale.ROOT)).matches();
+    }
+
+    /**
+     * @return интервал проверки в миллисекундах; {@code defaultMillis} для {@code auto} без интервала
+     */
+    public static long intervalMillis(String strategy, long defaultMillis) {
+        Matcher matcher = strategy != null ? AUTO.matcher(strategy.trim().toLowerCase(Locale.ROOT)) : null;
+        if (matcher == null || !matcher.matches()) {
+            throw new IllegalArgumentException("Неверная стратегия синхронизации: " + strategy);
+        }
+        if (matcher.group(1) == null) {
+            return defaultMillis;
+        }
+        long amount = Long.parseLong(matcher.group(1));
+        return switch (matcher.group(2)) {
+            case "m" -> amount * 60_000;
+            case "h" -> amount * 3_600_000;
+            default -> amount * 1_000;
+        };
+    }
+
+    /**
+     * Строки вида {@code auto...} должны разбираться; прочие значения (manual и т.п.) не проверяются.
+     */
+    public static void validate(String strategy) {
+        if (strategy != null && strategy.trim().toLowerCase(Locale.ROOT).startsWith(AUTO_PREFIX)) {
+            intervalMillis(strategy, 0);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.backend.service.git;
+
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Фильтр "путь изменён" для TreeRevFilter. В отличие от AndTreeFilter отдаёт путь
+ * через getPathsBestEffort, поэтому RevWalk может отбросить коммит по Bloom-фильтру
+ * из commit-graph, не сравнивая деревья.
+ */
+class ChangedPathTreeFilter extends TreeFilter {
+
+    private final PathFilter pathFilter;
+    private final TreeFilter delegate;
+
+    ChangedPathTreeFilter(String path) {
+        this.pathFilter = PathFilter.create(path);
+        this.delegate = AndTreeFilter.create(pathFilter, TreeFilter.ANY_DIFF);
+    }
+
+    @Override
+    public boolean include(TreeWalk walker) throws MissingObjectException, IncorrectObjectTypeException, IOException {
+        return delegate.include(walker);
+    }
+
+    @Override
+    public boolean shouldBeRecursive() {
+        return delegate.shouldBeRecursive();
+    }
+
+    @Override
+    public Optional<Set<byte[]>> getPathsBestEffort() {
+        return pathFilter.getPathsBestEffort();
+    }
+
+    @Override
+    public TreeFilter clone() {
+        return new ChangedPathTreeFilter(pathFilter.getPath());
+    }
+
+    @Override
+    public String toString() {
+        return delegate.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package ru.backend.service.git;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEditor;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+
+/**
+ * Правки индекса без рабочей копии: содержимое пишется сразу в базу объектов,
+ * а индекс строится из дерева коммита.
+ */
+final class DirCacheEdits {
+
+    private DirCacheEdits() {
+    }
+
+    static DirCache fromTree(ObjectReader reader, AnyObjectId treeId) throws IOException {
+        DirCache index = DirCache.newInCore();
+        DirCacheBuilder builder = index.builder();
+        builder.addTree(new byte[0], DirCacheEntry.STAGE_0, reader, treeId);
+        builder.finish();
+        return index;
+    }
+
+    static void upsert(DirCache index, ObjectInserter inserter, String path, byte[] content) throws IOException {
+        ObjectId blobId = inserter.insert(Constants.OBJ_BLOB, content);
+        DirCacheEditor editor = index.editor();
+        editor.add(new DirCacheEditor.PathEdit(path) {
+            @Override
+            public void apply(DirCacheEntry ent) {
+                if (ent.getRawMode() == 0) {
+                    ent.setFileMode(FileMode.REGULAR_FILE);
+                }
+                ent.setObjectId(blobId);
+            }
+        });
+        editor.finish();
+    }
+
+    static void delete(DirCache index, String path) throws FileNotFoundException {
+        requirePath(path);
+        DirCacheEditor editor = index.editor();
+        if (index.findEntry(path) >= 0) {
+            editor.add(new DirCacheEditor.DeletePath(path));
+        } else if (index.getEntriesWithin(path).length > 0) {
+            editor.add(new DirCacheEditor.DeleteTree(path));
+        } else {
+            throw new FileNotFoundException("Файл или папка не найдены: " + path);
+        }
+        editor.finish();
+    }
+
+    static void rename(DirCache index, String oldPath, String newPath) throws FileNotFoundException {
+        requirePath(oldPath);
+        requirePath(newPath);
+        if (newPath.startsWith(oldPath + "/")) {
+            throw new IllegalArgumentException("Нельзя переместить папку внутрь самой себя: " + oldPath);
+        }
+        DirCacheEditor editor = index.editor();
+        int position = index.findEntry(oldPath);
+        if (position >= 0) {
+            copyEntry(editor, index.getEntry(position), newPath);
+            editor.add(new DirCacheEditor.DeletePath(oldPath));
+        } else {
+            DirCacheEntry[] entries = index.getEntriesWithin(oldPath);
+            if (entries.length == 0) {
+                throw new FileNotFoundException("Исходный путь не существует: " + oldPath);
+            }
+            for (DirCacheEntry entry : entries) {
+                copyEntry(editor, entry, newPath + entry.getPathString().substring(oldPath.length()));
+            }
+            editor.add(new DirCacheEditor.DeleteTree(oldPath));
+        }
+        editor.finish();
+    }
+
+    // Пустой путь в индексе означает корень: удаление или перенос затронули бы всю ветку
+    private static void requirePath(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("Пустой путь в списке изменений");
+        }
+    }
+
+    private static void copyEntry(DirCacheEditor editor, DirCacheEntry source, String targetPath) {
+        FileMode mode = source.getFileMode();
+        ObjectId id = source.getObjectId();
+        editor.add(new DirCacheEditor.PathEdit(targetPath) {
+            @Override
+            public void apply(DirCacheEntry ent) {
+                ent.setFileMode(mode);
+                ent.setObjectId(id);
+            }
+        });
+    }
+}
@@ -0,0 +1,55 @@
+package ru.backend.service.git;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Общий кэш содержимого файлов по id blob-а. Содержимое blob-а неизменно, поэтому
+ * один и тот же файл в разных ветках и форках хранится один раз. Вытеснение — W-TinyLFU
+ * (Caffeine) с бюджетом {@code git.blob-cache.max-bytes}.
+ */
+@Service
+public class GitBlobCache {
+
+    private final long maxEntryBytes;
+    private final Cache<ObjectId, byte[]> cache;
+
+    public GitBlobCache(MeterRegistry registry, @Value("${git.blob-cache.max-bytes:67108864}") long maxBytes) {
+        this.maxEntryBytes = Math.max(1, maxBytes / 16);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((ObjectId id, byte[] content) -> content.length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "git.blob");
+    }
+
+    public byte[] read(ObjectReader reader, ObjectId blobId) throws IOException {
+        byte[] cached = cache.getIfPresent(blobId);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] content = load(reader, blobId);
+        // Крупные файлы не кладём в кэш, чтобы не вытеснять ими десятки мелких
+        if (content.length <= maxEntryBytes) {
+            cache.put(blobId.copy(), content);
+        }
+        return content;
+    }
+
+    private byte[] load(ObjectReader reader, ObjectId blobId) throws IOException {
+        try (InputStream in = reader.open(blobId, Constants.OBJ_BLOB).openStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
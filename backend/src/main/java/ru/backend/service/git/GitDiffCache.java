@@ -0,0 +1,62 @@
+package ru.backend.service.git;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.ToLongFunction;
+
+/**
+ * Кэш диффов между двумя коммитами. Такой дифф неизменен, поэтому записи не устаревают
+ * и вытесняются только по бюджету {@code git.diff.cache-max-bytes} (Caffeine, вес — байты).
+ */
+@Service
+public class GitDiffCache {
+
+    private final Cache<Key, Entry> cache;
+
+    public GitDiffCache(@Value("${git.diff.cache-max-bytes:33554432}") long maxBytes) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, entry.weight()))
+                .build();
+    }
+
+    /**
+     * Одновременные запросы одного ключа ждут единственной загрузки.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key key, Loader<T> loader, ToLongFunction<T> weigher) throws IOException {
+        try {
+            return (T) cache.get(key, k -> {
+                try {
+                    T value = loader.load();
+                    return new Entry(value, weigher.applyAsLong(value));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).value();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @param base коммит-основа; {@code null} — пустое дерево (корневой коммит)
+     * @param kind вид результата: патч или статистика по файлам
+     */
+    public record Key(ObjectId base, ObjectId head, String path, String kind) {
+    }
+
+    @FunctionalInterface
+    public interface Loader<T> {
+        T load() throws IOException;
+    }
+
+    private record Entry(Object value, long weight) {
+    }
+}
@@ -0,0 +1,524 @@
+package ru.backend.service.git;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.internal.storage.commitgraph.CommitGraphWriter;
+import org.eclipse.jgit.internal.storage.commitgraph.GraphCommits;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.transport.FetchResult;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.eclipse.jgit.util.FileUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.util.EncryptionUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Локальные bare-зеркала удалённых репозиториев в {@code storage.base-dir/mirrors}.
+ * Зеркало клонируется один раз и дальше обновляется инкрементальным fetch,
+ * не чаще чем раз в {@code git.mirror.fetch-ttl-ms}.
+ * <p>
+ * Читатели получают зеркало через {@link #acquire}: пока аренда открыта, зеркало не
+ * вытесняется и не проходит gc, а обслуживание, начатое раньше, дожидается новый читатель.
+ */
+@Slf4j
+@Service
+public class GitMirrorService {
+
+    private final File mirrorsDir;
+    private final long fetchTtlMillis;
+    private final boolean commitGraphEnabled;
+
+    private final Map<String, Repository> repositories = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastFetch = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastAccess = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final Map<String, ReentrantReadWriteLock> usage = new ConcurrentHashMap<>();
+    private final Set<String> evicted = ConcurrentHashMap.newKeySet();
+    private final List<Consumer<GitConnectionRequestDto>> updateListeners = new CopyOnWriteArrayList<>();
+
+    public GitMirrorService(@Value("${storage.base-dir}") String baseDirPath,
+                            @Value("${git.mirror.fetch-ttl-ms:5000}") long fetchTtlMillis,
+                            @Value("${git.mirror.commit-graph:true}") boolean commitGraphEnabled) {
+        File baseDir = new File(resolvePath(baseDirPath));
+        this.mirrorsDir = new File(baseDir, "mirrors");
+        if (!mirrorsDir.exists()) mirrorsDir.mkdirs();
+        this.fetchTtlMillis = fetchTtlMillis;
+        this.commitGraphEnabled = commitGraphEnabled;
+    }
+
+    private String resolvePath(String path) {
+        return path.replace("${user.home}", System.getProperty("user.home"));
+    }
+
+    /**
+     * Открывает зеркало на время чтения. Аренду нужно закрыть в том же потоке.
+     */
+    public Lease acquire(GitConnectionRequestDto repo) throws IOException, GitAPIException {
+        return lease(repo, false);
+    }
+
+    /**
+     * Как {@link #acquire}, но с принудительным fetch: новый коммит должен строиться
+     * от актуальной вершины ветки.
+     */
+    public Lease acquireLatest(GitConnectionRequestDto repo) throws IOException, GitAPIException {
+        return lease(repo, true);
+    }
+
+    private Lease lease(GitConnectionRequestDto repo, boolean latest) throws IOException, GitAPIException {
+        Lock readLock = usage.computeIfAbsent(keyOf(repo), k -> new ReentrantReadWriteLock()).readLock();
+        readLock.lock();
+        try {
+            return new Lease(latest ? refresh(repo) : open(repo), readLock);
+        } catch (IOException | GitAPIException | RuntimeException e) {
+            readLock.unlock();
+            throw e;
+        }
+    }
+
+    private Repository open(GitConnectionRequestDto repo) throws IOException, GitAPIException {
+        String key = keyOf(repo);
+        lastAccess.put(key, System.currentTimeMillis());
+        evicted.remove(key);
+        Repository cached = repositories.get(key);
+        if (cached != null && !isStale(key)) {
+            return cached;
+        }
+
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        if (cached != null && !lock.tryLock()) {
+            // Зеркало уже обновляется другим запросом — отдаём текущее состояние
+            return cached;
+        }
+        if (cached == null) {
+            lock.lock();
+        }
+
+        try {
+            Repository repository = repositories.get(key);
+            if (repository == null) {
+                repository = openOrClone(repo, key);
+                repositories.put(key, repository);
+                lastFetch.put(key, System.currentTimeMillis());
+            } else if (isStale(key)) {
+                fetch(repo, repository);
+                lastFetch.put(key, System.currentTimeMillis());
+            }
+            return repository;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Repository refresh(GitConnectionRequestDto repo) throws IOException, GitAPIException {
+        String key = keyOf(repo);
+        lastAccess.put(key, System.currentTimeMillis());
+        evicted.remove(key);
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        lock.lock();
+        try {
+            Repository repository = repositories.get(key);
+            if (repository == null) {
+                repository = openOrClone(repo, key);
+                repositories.put(key, repository);
+            } else {
+                fetch(repo, repository);
+            }
+            lastFetch.put(key, System.currentTimeMillis());
+            return repository;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Fetch из фонового планировщика. Если зеркало прямо сейчас обновляется запросом,
+     * шаг пропускается — результат этого запроса и так будет свежим. Вытесненное по квоте
+     * зеркало фоном не восстанавливается, его заново склонирует первое чтение.
+     *
+     * @return {@code true}, если ветки зеркала сдвинулись
+     */
+    public boolean fetchInBackground(GitConnectionRequestDto repo) throws IOException, GitAPIException {
+        String key = keyOf(repo);
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            Repository repository = repositories.get(key);
+            if (repository == null && evicted.contains(key)) {
+                return false;
+            }
+            boolean changed;
+            if (repository == null) {
+                repository = openOrClone(repo, key);
+                repositories.put(key, repository);
+                changed = true;
+            } else {
+                changed = fetch(repo, repository);
+            }
+            lastFetch.put(key, System.currentTimeMillis());
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Время последнего чтения или записи через зеркало; 0, если обращений не было.
+     */
+    public long getLastAccess(GitConnectionRequestDto repo) {
+        return getLastAccess(keyOf(repo));
+    }
+
+    public long getLastAccess(String key) {
+        return lastAccess.getOrDefault(key, 0L);
+    }
+
+    public long getLastFetch(String key) {
+        return lastFetch.getOrDefault(key, 0L);
+    }
+
+    public File getMirrorsDir() {
+        return mirrorsDir;
+    }
+
+    /**
+     * Выполняет обслуживание зеркала под его блокировкой. Если зеркало сейчас занято
+     * fetch-ем, записью или чтением, задача не выполняется.
+     *
+     * @param key имя каталога зеркала без суффикса {@code .git}
+     * @return {@code false}, если зеркало занято или отсутствует
+     */
+    public boolean runExclusive(String key, MirrorTask task) throws IOException, GitAPIException {
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            return false;
+        }
+        Lock writeLock = usage.computeIfAbsent(key, k -> new ReentrantReadWriteLock()).writeLock();
+        if (!writeLock.tryLock()) {
+            lock.unlock();
+            return false;
+        }
+        try {
+            Repository repository = repositories.get(key);
+            if (repository != null) {
+                task.run(repository);
+                return true;
+            }
+            File dir = new File(mirrorsDir, key + ".git");
+            if (!new File(dir, "objects").isDirectory()) {
+                return false;
+            }
+            try (Repository closed = new FileRepositoryBuilder().setGitDir(dir).setMustExist(true).build()) {
+                task.run(closed);
+            }
+            return true;
+        } finally {
+            writeLock.unlock();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Удаляет зеркало с диска. Следующее обращение к репозиторию склонирует его заново.
+     *
+     * @return {@code false}, если зеркало сейчас занято fetch-ем, записью или чтением
+     */
+    public boolean evict(String key) throws IOException {
+        ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            return false;
+        }
+        Lock writeLock = usage.computeIfAbsent(key, k -> new ReentrantReadWriteLock()).writeLock();
+        if (!writeLock.tryLock()) {
+            lock.unlock();
+            return false;
+        }
+        try {
+            Repository repository = repositories.remove(key);
+            if (repository != null) {
+                repository.close();
+            }
+            lastFetch.remove(key);
+            evicted.add(key);
+            FileUtils.delete(new File(mirrorsDir, key + ".git"), FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+            return true;
+        } finally {
+            writeLock.unlock();
+            lock.unlock();
+        }
+    }
+
+    public void updateBranch(GitConnectionRequestDto repo, Repository repository, String branch, ObjectId oldId, ObjectId newId) throws IOException {
+        RefUpdate update = repository.updateRef(Constants.R_HEADS + branch);
+        update.setExpectedOldObjectId(oldId);
+        update.setNewObjectId(newId);
+        RefUpdate.Result result = update.update();
+        if (result != RefUpdate.Result.FAST_FORWARD && result != RefUpdate.Result.NEW) {
+            // Локальная ссылка ушла вперёд — её поправит следующий fetch
+            log.debug("Ссылка {} в зеркале не обновлена: {}", branch, result);
+            return;
+        }
+        notifyUpdated(repo);
+    }
+
+    /**
+     * Слушатель вызывается после того, как ветки зеркала сдвинулись (fetch или локальный коммит).
+     * Вызов синхронный, поэтому тяжёлую работу слушатель должен переносить в свой поток.
+     */
+    public void addUpdateListener(Consumer<GitConnectionRequestDto> listener) {
+        updateListeners.add(listener);
+    }
+
+    private void notifyUpdated(GitConnectionRequestDto repo) {
+        for (Consumer<GitConnectionRequestDto> listener : updateListeners) {
+            try {
+                listener.accept(repo);
+            } catch (RuntimeException e) {
+                log.warn("Ошибка обработчика обновления зеркала {}: {}", repo.getRepoUrl(), e.getMessage());
+            }
+        }
+    }
+
+    public ObjectId resolveBranch(Repository repository, String branch) throws IOException, RefNotFoundException {
+        Ref ref = repository.exactRef(Constants.R_HEADS + branch);
+        if (ref == null || ref.getObjectId() == null) {
+            throw new RefNotFoundException("Ветка не найдена: " + branch);
+        }
+        return ref.getObjectId();
+    }
+
+    public void invalidate(GitConnectionRequestDto repo) {
+        lastFetch.remove(keyOf(repo));
+    }
+
+    private boolean isStale(String key) {
+        Long last = lastFetch.get(key);
+        return last == null || System.currentTimeMillis() - last >= fetchTtlMillis;
+    }
+
+    private Repository openOrClone(GitConnectionRequestDto repo, String key) throws IOException, GitAPIException {
+        File dir = new File(mirrorsDir, key + ".git");
+        if (new File(dir, "objects").isDirectory()) {
+            Repository repository = new FileRepositoryBuilder()
+                    .setGitDir(dir)
+                    .setMustExist(true)
+                    .build();
+            configureCommitGraph(repository);
+            fetch(repo, repository);
+            return repository;
+        }
+
+        log.info("Создание зеркала репозитория {}", repo.getRepoUrl());
+        Repository repository = Git.init()
+                .setDirectory(dir)
+                .setBare(true)
+                .call()
+                .getRepository();
+        try {
+            configureRemote(repository, repo.getRepoUrl());
+            configureCommitGraph(repository);
+            Git.wrap(repository).fetch()
+                    .setRemote("origin")
+                    .setCredentialsProvider(getCredentials(repo))
+                    .call();
+        } catch (IOException | GitAPIException | RuntimeException e) {
+            // Недокачанное зеркало не должно выглядеть готовым для следующего открытия
+            repository.close();
+            FileUtils.delete(dir, FileUtils.RECURSIVE | FileUtils.SKIP_MISSING);
+            throw e;
+        }
+        writeCommitGraph(repository);
+        return repository;
+    }
+
+    private boolean fetch(GitConnectionRequestDto repo, Repository repository) throws GitAPIException {
+        FetchResult result = Git.wrap(repository).fetch()
+                .setRemote("origin")
+                .setRemoveDeletedRefs(true)
+                .setCredentialsProvider(getCredentials(repo))
+                .call();
+
+        if (!result.getTrackingRefUpdates().isEmpty() || !commitGraphFile(repository).exists()) {
+            writeCommitGraph(repository);
+        }
+        if (!result.getTrackingRefUpdates().isEmpty()) {
+            notifyUpdated(repo);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Зеркалу нужны только ветки и теги. {@code refs/*} потянул бы и служебные ссылки хостинга
+     * ({@code refs/pull/*} GitHub, {@code refs/changes/*} Gerrit), раздувая fetch, commit-graph и gc.
+     */
+    private void configureRemote(Repository repository, String url) throws IOException {
+        StoredConfig config = repository.getConfig();
+        config.setString(ConfigConstants.CONFIG_REMOTE_SECTION, "origin", ConfigConstants.CONFIG_KEY_URL, url);
+        config.setStringList(ConfigConstants.CONFIG_REMOTE_SECTION, "origin", ConfigConstants.CONFIG_FETCH_SECTION,
+                List.of("+" + Constants.R_HEADS + "*:" + Constants.R_HEADS + "*", "+" + Constants.R_TAGS + "*:" + Constants.R_TAGS + "*"));
+        config.save();
+    }
+
+    /**
+     * Флаги commit-graph пишутся в конфиг самого зеркала, а не в общий конфиг JGit процесса.
+     */
+    private void configureCommitGraph(Repository repository) throws IOException {
+        if (!commitGraphEnabled) {
+            return;
+        }
+        StoredConfig config = repository.getConfig();
+        config.setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null, ConfigConstants.CONFIG_COMMIT_GRAPH, true);
+        config.setBoolean(ConfigConstants.CONFIG_COMMIT_GRAPH_SECTION, null, ConfigConstants.CONFIG_KEY_READ_CHANGED_PATHS, true);
+        config.setBoolean(ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_WRITE_COMMIT_GRAPH, true);
+        config.setBoolean(ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_WRITE_CHANGED_PATHS, true);
+        config.save();
+    }
+
+    /**
+     * Перезаписывает commit-graph с Bloom-фильтрами изменённых путей. Фильтры уже
+     * проиндексированных коммитов берутся из текущего файла, так что после fetch
+     * пересчитываются только новые коммиты.
+     */
+    private void writeCommitGraph(Repository repository) {
+        if (!commitGraphEnabled) {
+            return;
+        }
+        File graphFile = commitGraphFile(repository);
+        File tmp = null;
+        try (RevWalk walk = new RevWalk(repository)) {
+            Set<ObjectId> tips = new HashSet<>();
+            for (Ref ref : repository.getRefDatabase().getRefs()) {
+                ObjectId id = ref.getObjectId();
+                if (id == null) continue;
+                RevObject peeled = walk.peel(walk.parseAny(id));
+                if (peeled instanceof RevCommit) {
+                    tips.add(peeled.copy());
+                }
+            }
+            if (tips.isEmpty()) {
+                return;
+            }
+            walk.reset();
+
+            GraphCommits commits = GraphCommits.fromWalk(NullProgressMonitor.INSTANCE, tips, walk);
+            graphFile.getParentFile().mkdirs();
+            tmp = File.createTempFile("commit-graph", ".tmp", graphFile.getParentFile());
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(tmp))) {
+                new CommitGraphWriter(commits, true).write(NullProgressMonitor.INSTANCE, out);
+            }
+            Files.move(tmp.toPath(), graphFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Не удалось записать commit-graph для {}: {}", repository.getDirectory(), e.getMessage());
+        } finally {
+            if (tmp != null && tmp.exists()) tmp.delete();
+        }
+    }
+
+    private File commitGraphFile(Repository repository) {
+        return new File(repository.getDirectory(), "objects/info/commit-graph");
+    }
+
+    /**
+     * Имя каталога зеркала: читаемый хвост URL и SHA-256 нормализованного URL. Одна замена
+     * символов не инъективна — {@code host/a_b/c} и {@code host/a/b_c} попали бы в один каталог.
+     */
+    static String keyOf(String repoUrl) {
+        String normalized = repoUrl.trim().replaceAll("/+$", "");
+        String name = normalized.substring(normalized.lastIndexOf('/') + 1)
+                .replaceAll("\\.git$", "")
+                .replaceAll("[^A-Za-z0-9._-]", "_");
+        if (name.length() > 40) {
+            name = name.substring(0, 40);
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(normalized.getBytes(StandardCharsets.UTF_8));
+            return name + "-" + HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 недоступен", e);
+        }
+    }
+
+    private String keyOf(GitConnectionRequestDto repo) {
+        return keyOf(repo.getRepoUrl());
+    }
+
+    private UsernamePasswordCredentialsProvider getCredentials(GitConnectionRequestDto repo) {
+        String decryptedToken = repo.getToken() != null && !repo.getToken().isBlank()
+                ? EncryptionUtils.decrypt(repo.getToken())
+                : "";
+        return new UsernamePasswordCredentialsProvider(repo.getUsername(), decryptedToken);
+    }
+
+    /**
+     * Открытое для чтения зеркало. Закрытие аренды не закрывает сам {@link Repository}.
+     */
+    public static final class Lease implements AutoCloseable {
+        private final Repository repository;
+        private final Lock readLock;
+
+        private Lease(Repository repository, Lock readLock) {
+            this.repository = repository;
+            this.readLock = readLock;
+        }
+
+        public Repository getRepository() {
+            return repository;
+        }
+
+        @Override
+        public void close() {
+            readLock.unlock();
+        }
+    }
+
+    @FunctionalInterface
+    public interface MirrorTask {
+        void run(Repository repository) throws IOException, GitAPIException;
+    }
+
+    @PreDestroy
+    public void close() {
+        repositories.values().forEach(Repository::close);
+        repositories.clear();
+    }
+}
@@ -0,0 +1,191 @@
+package ru.backend.service.git;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.errors.ConfigInvalidException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.storage.file.FileBasedConfig;
+import org.eclipse.jgit.util.FS;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.backend.rest.git.dto.GitMirrorStatsDto;
+import ru.backend.rest.git.dto.GitMirrorStoreDto;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Обслуживание каталога зеркал: квота на общий объём с вытеснением давно не читавшихся
+ * зеркал (LRU) и периодический gc, который собирает объекты в один pack с bitmap-индексом.
+ */
+@Slf4j
+@Service
+public class GitMirrorStore {
+
+    private static final int LOOSE_OBJECTS_GC_THRESHOLD = 1000;
+
+    private final GitMirrorService mirrorService;
+    private final long maxBytes;
+    private final long evictIdleMillis;
+    private final int gcPackThreshold;
+
+    public GitMirrorStore(GitMirrorService mirrorService,
+                          @Value("${git.mirror.store.max-bytes:10737418240}") long maxBytes,
+                          @Value("${git.mirror.store.evict-idle-ms:3600000}") long evictIdleMillis,
+                          @Value("${git.mirror.store.gc-pack-threshold:8}") int gcPackThreshold) {
+        this.mirrorService = mirrorService;
+        this.maxBytes = maxBytes;
+        this.evictIdleMillis = evictIdleMillis;
+        this.gcPackThreshold = Math.max(2, gcPackThreshold);
+    }
+
+    public GitMirrorStoreDto getStats() {
+        List<GitMirrorStatsDto> mirrors = scan();
+        mirrors.sort(Comparator.comparingLong(GitMirrorStatsDto::getSizeBytes).reversed());
+        return new GitMirrorStoreDto(maxBytes, mirrors);
+    }
+
+    /**
+     * Сначала gc (он сам по себе уменьшает объём), затем вытеснение по квоте.
+     */
+    public GitMirrorStoreDto maintain() {
+        for (GitMirrorStatsDto mirror : scan()) {
+            if (needsGc(mirror)) {
+                gc(mirror);
+            }
+        }
+        enforceQuota();
+        return getStats();
+    }
+
+    private boolean needsGc(GitMirrorStatsDto mirror) {
+        return mirror.getPackCount() >= gcPackThreshold
+                || mirror.getLooseObjects() >= LOOSE_OBJECTS_GC_THRESHOLD
+                || (mirror.getPackCount() > 0 && !mirror.isBitmap());
+    }
+
+    private void gc(GitMirrorStatsDto mirror) {
+        long started = System.currentTimeMillis();
+        try {
+            boolean done = mirrorService.runExclusive(mirror.getDirectory(), repository -> {
+                repository.getConfig().setBoolean(
+                        ConfigConstants.CONFIG_PACK_SECTION, null, ConfigConstants.CONFIG_KEY_BUILD_BITMAPS, true);
+                // Под блокировкой зеркала нет ни fetch, ни читателей — старые pack-файлы можно удалять сразу
+                repository.getConfig().setString(
+                        ConfigConstants.CONFIG_GC_SECTION, null, ConfigConstants.CONFIG_KEY_PRUNEPACKEXPIRE, "now");
+                Git.wrap(repository).gc().call();
+            });
+            if (done) {
+                log.info("gc зеркала {}: {} pack-файлов, {} мс", mirror.getRepoUrl(), mirror.getPackCount(),
+                        System.currentTimeMillis() - started);
+            }
+        } catch (Exception e) {
+            log.warn("Ошибка gc зеркала {}: {}", mirror.getRepoUrl(), e.getMessage());
+        }
+    }
+
+    private void enforceQuota() {
+        List<GitMirrorStatsDto> mirrors = scan();
+        long total = mirrors.stream().mapToLong(GitMirrorStatsDto::getSizeBytes).sum();
+        if (total <= maxBytes) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        mirrors.sort(Comparator.comparingLong(GitMirrorStatsDto::getLastAccess));
+        for (GitMirrorStatsDto mirror : mirrors) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (now - mirror.getLastAccess() < evictIdleMillis) {
+                continue;
+            }
+            try {
+                if (mirrorService.evict(mirror.getDirectory())) {
+                    total -= mirror.getSizeBytes();
+                    log.info("Зеркало {} вытеснено по квоте ({} байт)", mirror.getRepoUrl(), mirror.getSizeBytes());
+                }
+            } catch (IOException e) {
+                log.warn("Не удалось удалить зеркало {}: {}", mirror.getRepoUrl(), e.getMessage());
+            }
+        }
+        if (total > maxBytes) {
+            log.warn("Объём зеркал {} байт превышает квоту {} байт: остальные зеркала недавно использовались", total, maxBytes);
+        }
+    }
+
+    private List<GitMirrorStatsDto> scan() {
+        List<GitMirrorStatsDto> result = new ArrayList<>();
+        File[] dirs = mirrorService.getMirrorsDir().listFiles(file -> file.isDirectory() && file.getName().endsWith(".git"));
+        if (dirs == null) {
+            return result;
+        }
+        for (File dir : dirs) {
+            try {
+                result.add(describe(dir));
+            } catch (IOException e) {
+                // Зеркало могли удалить или пересобрать во время обхода
+                log.debug("Не удалось прочитать зеркало {}: {}", dir, e.getMessage());
+            }
+        }
+        return result;
+    }
+
+    private GitMirrorStatsDto describe(File dir) throws IOException {
+        String key = dir.getName().substring(0, dir.getName().length() - ".git".length());
+        GitMirrorStatsDto stats = new GitMirrorStatsDto();
+        stats.setDirectory(key);
+        stats.setRepoUrl(readRemoteUrl(dir));
+        stats.setSizeBytes(sizeOf(dir.toPath()));
+
+        File[] packFiles = new File(dir, "objects/pack").listFiles();
+        if (packFiles != null) {
+            for (File file : packFiles) {
+                if (file.getName().endsWith(".pack")) stats.setPackCount(stats.getPackCount() + 1);
+                if (file.getName().endsWith(".bitmap")) stats.setBitmap(true);
+            }
+        }
+        stats.setLooseObjects(countLooseObjects(new File(dir, "objects")));
+
+        // После рестарта время доступа неизвестно — берём время изменения каталога
+        long lastAccess = mirrorService.getLastAccess(key);
+        stats.setLastAccess(lastAccess > 0 ? lastAccess : dir.lastModified());
+        stats.setLastFetch(mirrorService.getLastFetch(key));
+        return stats;
+    }
+
+    private String readRemoteUrl(File dir) {
+        FileBasedConfig config = new FileBasedConfig(new File(dir, "config"), FS.DETECTED);
+        try {
+            config.load();
+            return config.getString(ConfigConstants.CONFIG_REMOTE_SECTION, "origin", ConfigConstants.CONFIG_KEY_URL);
+        } catch (IOException | ConfigInvalidException e) {
+            return null;
+        }
+    }
+
+    private long sizeOf(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(path -> path.toFile().length()).sum();
+        }
+    }
+
+    private int countLooseObjects(File objectsDir) {
+        int count = 0;
+        File[] fanout = objectsDir.listFiles(file -> file.isDirectory() && file.getName().length() == 2);
+        if (fanout == null) {
+            return 0;
+        }
+        for (File dir : fanout) {
+            String[] names = dir.list();
+            if (names != null) count += names.length;
+        }
+        return count;
+    }
+}
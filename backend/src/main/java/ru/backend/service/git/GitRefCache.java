@@ -0,0 +1,121 @@
+package ru.backend.service.git;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.util.EncryptionUtils;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Кэш веток удалённого репозитория (имя ветки → commit id), заполняемый одним ls-remote.
+ * Параллельные запросы на обновление одного репозитория ждут общий ls-remote.
+ */
+@Slf4j
+@Service
+public class GitRefCache {
+
+    private final long ttlMillis;
+    private final int timeoutSeconds;
+
+    private final Map<String, CachedRefs> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Map<String, ObjectId>>> inFlight = new ConcurrentHashMap<>();
+
+    public GitRefCache(@Value("${git.refs.ttl-ms:10000}") long ttlMillis,
+                       @Value("${git.refs.timeout-s:15}") int timeoutSeconds) {
+        this.ttlMillis = ttlMillis;
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public Map<String, ObjectId> getBranches(GitConnectionRequestDto repo) throws GitAPIException {
+        String key = repo.getRepoUrl();
+        CachedRefs cached = cache.get(key);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAt < ttlMillis) {
+            return cached.branches;
+        }
+        return refresh(repo);
+    }
+
+    public ObjectId getBranch(GitConnectionRequestDto repo, String branch) throws GitAPIException {
+        return getBranches(repo).get(branch);
+    }
+
+    public void invalidate(GitConnectionRequestDto repo) {
+        cache.remove(repo.getRepoUrl());
+    }
+
+    private Map<String, ObjectId> refresh(GitConnectionRequestDto repo) throws GitAPIException {
+        String key = repo.getRepoUrl();
+        CompletableFuture<Map<String, ObjectId>> mine = new CompletableFuture<>();
+        CompletableFuture<Map<String, ObjectId>> existing = inFlight.putIfAbsent(key, mine);
+        if (existing != null) {
+            return await(existing);
+        }
+
+        try {
+            Map<String, ObjectId> branches = lsRemote(repo);
+            cache.put(key, new CachedRefs(branches, System.currentTimeMillis()));
+            mine.complete(branches);
+            return branches;
+        } catch (GitAPIException | RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    private Map<String, ObjectId> lsRemote(GitConnectionRequestDto repo) throws GitAPIException {
+        Map<String, ObjectId> branches = new TreeMap<>();
+        for (Ref ref : Git.lsRemoteRepository()
+                .setRemote(repo.getRepoUrl())
+                .setHeads(true)
+                .setTimeout(timeoutSeconds)
+                .setCredentialsProvider(getCredentials(repo))
+                .call()) {
+            if (ref.getName().startsWith(Constants.R_HEADS) && ref.getObjectId() != null) {
+                branches.put(ref.getName().substring(Constants.R_HEADS.length()), ref.getObjectId());
+            }
+        }
+        return Collections.unmodifiableMap(branches);
+    }
+
+    private Map<String, ObjectId> await(CompletableFuture<Map<String, ObjectId>> future) throws GitAPIException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание ls-remote прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof GitAPIException gitError) throw gitError;
+            if (e.getCause() instanceof RuntimeException runtimeError) throw runtimeError;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private UsernamePasswordCredentialsProvider getCredentials(GitConnectionRequestDto repo) {
+        String decryptedToken = repo.getToken() != null && !repo.getToken().isBlank()
+                ? EncryptionUtils.decrypt(repo.getToken())
+                : "";
+        return new UsernamePasswordCredentialsProvider(repo.getUsername(), decryptedToken);
+    }
+
+    private record CachedRefs(Map<String, ObjectId> branches, long loadedAt) {
+    }
+}
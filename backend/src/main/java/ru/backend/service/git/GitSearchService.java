@@ -0,0 +1,532 @@
+package ru.backend.service.git;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.RawText;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.rest.git.dto.GitSearchHitDto;
+import ru.backend.rest.git.dto.GitSearchPageDto;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Полнотекстовый индекс содержимого веток: токен → blob → номера строк.
+ * Индексируются blob-ы, а не пути, поэтому одинаковые файлы в разных ветках и репозиториях
+ * разбираются один раз. После fetch индекс ветки догоняется по diff деревьев —
+ * переиндексируются только изменившиеся файлы.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GitSearchService {
+
+    private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}_]{2,64}");
+    private static final long MAX_INDEXED_BLOB_BYTES = 1024 * 1024;
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_LINE_LENGTH = 500;
+    private static final int MAX_REGEX_LENGTH = 256;
+    private static final long REGEX_TIME_LIMIT_MILLIS = 2000;
+
+    private final GitMirrorService mirrorService;
+    private final GitService gitService;
+    private final GitBlobCache blobCache;
+
+    private final Map<String, BranchIndex> indexes = new ConcurrentHashMap<>();
+    private final Map<ObjectId, IndexedBlob> blobs = new HashMap<>();
+    private final Map<String, Set<ObjectId>> postings = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, ReentrantLock> updateLocks = new ConcurrentHashMap<>();
+    private final ExecutorService indexer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "git-search-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        mirrorService.addUpdateListener(repo -> indexer.execute(() -> refreshRepository(repo.getRepoUrl())));
+    }
+
+    /**
+     * Первичная индексация идёт в фоне уже после старта: клонирование зеркал не задерживает
+     * подъём приложения, а поиск по конкретному репозиторию до того индексирует ветку сам.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexRegisteredRepositories() {
+        for (GitConnectionRequestDto repo : gitService.getAll()) {
+            if (repo.getBranch() != null && !repo.getBranch().isBlank()) {
+                indexer.execute(() -> refreshQuietly(indexFor(repo, repo.getBranch())));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        indexer.shutdownNow();
+    }
+
+    public GitSearchPageDto search(String query, String regex, String repoName, String branch, int offset, int limit) throws IOException, GitAPIException {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("Запрос должен содержать слово не короче 2 символов");
+        }
+        Pattern pattern = compileFilter(regex);
+        int skip = Math.max(offset, 0);
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        List<BranchIndex> targets = new ArrayList<>();
+        if (repoName != null && !repoName.isBlank()) {
+            GitConnectionRequestDto repo = gitService.getByName(repoName);
+            String targetBranch = branch != null && !branch.isBlank() ? branch : repo.getBranch();
+            if (targetBranch == null || targetBranch.isBlank()) {
+                throw new IllegalArgumentException("Не указана ветка для поиска");
+            }
+            BranchIndex index = indexFor(repo, targetBranch);
+            refresh(index);
+            targets.add(index);
+        } else {
+            for (BranchIndex index : indexes.values()) {
+                if (branch == null || branch.isBlank() || index.branch.equals(branch)) {
+                    targets.add(index);
+                }
+            }
+            targets.sort(Comparator.comparing((BranchIndex index) -> index.repo.getName()).thenComparing(index -> index.branch));
+        }
+
+        List<Candidate> candidates = findCandidates(targets, tokens);
+        // Время фильтра ограничено на весь запрос: катастрофический возврат в regex не займёт поток надолго
+        long regexDeadline = System.nanoTime() + REGEX_TIME_LIMIT_MILLIS * 1_000_000;
+
+        List<GitSearchHitDto> items = new ArrayList<>();
+        int matched = 0;
+        for (Candidate candidate : candidates) {
+            RawText text;
+            try (GitMirrorService.Lease lease = mirrorService.acquire(candidate.index.repo);
+                 ObjectReader reader = lease.getRepository().newObjectReader()) {
+                text = new RawText(blobCache.read(reader, candidate.blobId));
+            }
+            for (int line : candidate.lines) {
+                String content = text.getString(line - 1);
+                if (pattern != null && !pattern.matcher(new DeadlineCharSequence(content, regexDeadline)).find()) {
+                    continue;
+                }
+                if (matched++ < skip) {
+                    continue;
+                }
+                if (items.size() == pageSize) {
+                    return new GitSearchPageDto(items, skip + pageSize);
+                }
+                items.add(new GitSearchHitDto(candidate.index.repo.getName(), candidate.index.branch, candidate.path, line,
+                        content.length() > MAX_LINE_LENGTH ? content.substring(0, MAX_LINE_LENGTH) : content));
+            }
+        }
+        return new GitSearchPageDto(items, null);
+    }
+
+    private Pattern compileFilter(String regex) {
+        if (regex == null || regex.isBlank()) {
+            return null;
+        }
+        if (regex.length() > MAX_REGEX_LENGTH) {
+            throw new IllegalArgumentException("Регулярное выражение длиннее " + MAX_REGEX_LENGTH + " символов");
+        }
+        return Pattern.compile(regex);
+    }
+
+    private List<Candidate> findCandidates(List<BranchIndex> targets, List<String> tokens) {
+        List<Candidate> candidates = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Set<ObjectId> matching = null;
+            for (String token : tokens) {
+                Set<ObjectId> withToken = postings.getOrDefault(token, Collections.emptySet());
+                if (matching == null) {
+                    matching = new HashSet<>(withToken);
+                } else {
+                    matching.retainAll(withToken);
+                }
+            }
+            if (matching == null || matching.isEmpty()) {
+                return candidates;
+            }
+
+            for (BranchIndex index : targets) {
+                List<Candidate> local = new ArrayList<>();
+                for (ObjectId blobId : matching) {
+                    Set<String> paths = index.blobPaths.get(blobId);
+                    if (paths == null) continue;
+                    int[] lines = matchingLines(blobs.get(blobId), tokens);
+                    if (lines.length == 0) continue;
+                    for (String path : paths) {
+                        local.add(new Candidate(index, path, blobId, lines));
+                    }
+                }
+                local.sort(Comparator.comparing(candidate -> candidate.path));
+                candidates.addAll(local);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return candidates;
+    }
+
+    private int[] matchingLines(IndexedBlob blob, List<String> tokens) {
+        int[] result = blob.lines.get(tokens.get(0));
+        for (int i = 1; i < tokens.size() && result.length > 0; i++) {
+            int[] other = blob.lines.get(tokens.get(i));
+            int[] common = new int[Math.min(result.length, other.length)];
+            int size = 0;
+            for (int a = 0, b = 0; a < result.length && b < other.length; ) {
+                if (result[a] == other[b]) {
+                    common[size++] = result[a];
+                    a++;
+                    b++;
+                } else if (result[a] < other[b]) {
+                    a++;
+                } else {
+                    b++;
+                }
+            }
+            result = Arrays.copyOf(common, size);
+        }
+        return result;
+    }
+
+    private BranchIndex indexFor(GitConnectionRequestDto repo, String branch) {
+        return indexes.computeIfAbsent(repo.getRepoUrl() + "#" + branch, key -> new BranchIndex(key, repo, branch));
+    }
+
+    private void refreshRepository(String repoUrl) {
+        for (BranchIndex index : indexes.values()) {
+            if (index.repo.getRepoUrl().equals(repoUrl)) {
+                refreshQuietly(index);
+            }
+        }
+    }
+
+    private void refreshQuietly(BranchIndex index) {
+        try {
+            refresh(index);
+        } catch (Exception e) {
+            log.warn("Не удалось обновить поисковый индекс {} ({}): {}", index.repo.getName(), index.branch, e.getMessage());
+        }
+    }
+
+    /**
+     * Обновления одного репозитория идут по очереди, разных — параллельно. Blob-ы, уже
+     * лежащие в общем индексе, закрепляются на время обновления, чтобы параллельное
+     * обновление другого репозитория не выбросило их до применения изменений.
+     */
+    private void refresh(BranchIndex index) throws IOException, GitAPIException {
+        ReentrantLock updateLock = updateLocks.computeIfAbsent(index.repo.getRepoUrl(), url -> new ReentrantLock());
+        updateLock.lock();
+        Set<ObjectId> pinned = new HashSet<>();
+        try {
+            GitConnectionRequestDto repo = gitService.getAll().stream()
+                    .filter(r -> r.getRepoUrl().equals(index.repo.getRepoUrl()))
+                    .findFirst()
+                    .orElse(null);
+            if (repo == null) {
+                // Репозиторий отключён — индекс больше не нужен
+                drop(index);
+                return;
+            }
+            index.repo = repo;
+
+            ObjectId tip;
+            List<Change> changes = new ArrayList<>();
+            Map<ObjectId, Map<String, int[]>> prepared = new HashMap<>();
+            RevTree tree;
+            try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+                 RevWalk walk = new RevWalk(lease.getRepository());
+                 TreeWalk treeWalk = new TreeWalk(walk.getObjectReader())) {
+                tip = mirrorService.resolveBranch(lease.getRepository(), index.branch);
+                if (tip.equals(index.commit)) {
+                    return;
+                }
+                ObjectReader reader = walk.getObjectReader();
+                tree = walk.parseCommit(tip).getTree();
+                if (index.tree != null) {
+                    treeWalk.addTree(index.tree);
+                } else {
+                    treeWalk.addTree(new EmptyTreeIterator());
+                }
+                treeWalk.addTree(tree);
+                treeWalk.setRecursive(true);
+                treeWalk.setFilter(TreeFilter.ANY_DIFF);
+
+                while (treeWalk.next()) {
+                    ObjectId oldId = isFile(treeWalk.getRawMode(0)) ? treeWalk.getObjectId(0) : null;
+                    ObjectId newId = isFile(treeWalk.getRawMode(1)) ? treeWalk.getObjectId(1) : null;
+                    if (oldId != null && oldId.equals(newId)) {
+                        // Сменился только режим файла — содержимое и путь в индексе те же
+                        continue;
+                    }
+                    changes.add(new Change(treeWalk.getPathString(), oldId, newId));
+                    if (newId != null && !prepared.containsKey(newId) && !pinned.contains(newId) && !pin(newId, pinned)) {
+                        prepared.put(newId, indexBlob(reader, newId));
+                    }
+                }
+            }
+
+            // Сначала все retain, потом все release: blob, который переехал на другой путь
+            // (переименование без изменений), не успевает выпасть из индекса. Все новые blob-ы
+            // либо уже в индексе, либо разобраны выше, поэтому применение не может упасть посередине
+            lock.writeLock().lock();
+            try {
+                applyChanges(index, changes, prepared);
+                index.commit = tip.copy();
+                index.tree = tree.copy();
+            } catch (RuntimeException e) {
+                // Индекс ветки не должен остаться наполовину обновлённым — следующий refresh соберёт его заново
+                reset(index);
+                throw e;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            log.debug("Поисковый индекс {} ({}) обновлён: изменено файлов {}, новых blob-ов {}",
+                    repo.getName(), index.branch, changes.size(), prepared.size());
+        } finally {
+            unpin(pinned);
+            updateLock.unlock();
+        }
+    }
+
+    private void applyChanges(BranchIndex index, List<Change> changes, Map<ObjectId, Map<String, int[]>> prepared) {
+        for (Change change : changes) {
+            if (change.newId != null) {
+                retain(change.newId, prepared.get(change.newId));
+                index.addPath(change.newId, change.path);
+            }
+        }
+        for (Change change : changes) {
+            if (change.oldId != null) {
+                index.removePath(change.oldId, change.path);
+                release(change.oldId);
+            }
+        }
+    }
+
+    private void drop(BranchIndex index) {
+        lock.writeLock().lock();
+        try {
+            reset(index);
+            indexes.remove(index.key, index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void reset(BranchIndex index) {
+        for (Map.Entry<ObjectId, Set<String>> entry : index.blobPaths.entrySet()) {
+            for (int i = 0; i < entry.getValue().size(); i++) {
+                release(entry.getKey());
+            }
+        }
+        index.blobPaths.clear();
+        index.commit = null;
+        index.tree = null;
+    }
+
+    private boolean pin(ObjectId blobId, Set<ObjectId> pinned) {
+        lock.writeLock().lock();
+        try {
+            IndexedBlob blob = blobs.get(blobId);
+            if (blob == null) {
+                return false;
+            }
+            blob.refs++;
+            pinned.add(blobId.copy());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unpin(Set<ObjectId> pinned) {
+        if (pinned.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (ObjectId blobId : pinned) {
+                release(blobId);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void retain(ObjectId blobId, Map<String, int[]> lines) {
+        IndexedBlob blob = blobs.get(blobId);
+        if (blob == null) {
+            if (lines == null) {
+                throw new IllegalStateException("Blob " + blobId.name() + " не разобран для индекса");
+            }
+            blob = new IndexedBlob(lines);
+            blobs.put(blobId.copy(), blob);
+            for (String token : lines.keySet()) {
+                postings.computeIfAbsent(token, t -> new HashSet<>()).add(blobId.copy());
+            }
+        }
+        blob.refs++;
+    }
+
+    private void release(ObjectId blobId) {
+        IndexedBlob blob = blobs.get(blobId);
+        if (blob == null || --blob.refs > 0) {
+            return;
+        }
+        blobs.remove(blobId);
+        for (String token : blob.lines.keySet()) {
+            Set<ObjectId> withToken = postings.get(token);
+            if (withToken != null) {
+                withToken.remove(blobId);
+                if (withToken.isEmpty()) {
+                    postings.remove(token);
+                }
+            }
+        }
+    }
+
+    private Map<String, int[]> indexBlob(ObjectReader reader, ObjectId blobId) throws IOException {
+        if (reader.getObjectSize(blobId, Constants.OBJ_BLOB) > MAX_INDEXED_BLOB_BYTES) {
+            return Collections.emptyMap();
+        }
+        byte[] content = reader.open(blobId, Constants.OBJ_BLOB).getCachedBytes();
+        if (RawText.isBinary(content)) {
+            return Collections.emptyMap();
+        }
+
+        RawText text = new RawText(content);
+        Map<String, List<Integer>> lines = new HashMap<>();
+        for (int line = 0; line < text.size(); line++) {
+            for (String token : tokenize(text.getString(line))) {
+                lines.computeIfAbsent(token, t -> new ArrayList<>()).add(line + 1);
+            }
+        }
+
+        Map<String, int[]> result = new HashMap<>(lines.size() * 2);
+        for (Map.Entry<String, List<Integer>> entry : lines.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().stream().mapToInt(Integer::intValue).toArray());
+        }
+        return result;
+    }
+
+    private List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        Set<String> tokens = new LinkedHashSet<>();
+        Matcher matcher = TOKEN.matcher(text);
+        while (matcher.find()) {
+            tokens.add(matcher.group().toLowerCase(Locale.ROOT));
+        }
+        return new ArrayList<>(tokens);
+    }
+
+    private boolean isFile(int rawMode) {
+        return (rawMode & FileMode.TYPE_MASK) == FileMode.TYPE_FILE;
+    }
+
+    private static final class BranchIndex {
+        private final String key;
+        private final String branch;
+        private final Map<ObjectId, Set<String>> blobPaths = new HashMap<>();
+        private volatile GitConnectionRequestDto repo;
+        private ObjectId commit;
+        private ObjectId tree;
+
+        private BranchIndex(String key, GitConnectionRequestDto repo, String branch) {
+            this.key = key;
+            this.repo = repo;
+            this.branch = branch;
+        }
+
+        private void addPath(ObjectId blobId, String path) {
+            blobPaths.computeIfAbsent(blobId.copy(), id -> new TreeSet<>()).add(path);
+        }
+
+        private void removePath(ObjectId blobId, String path) {
+            Set<String> paths = blobPaths.get(blobId);
+            if (paths != null && paths.remove(path) && paths.isEmpty()) {
+                blobPaths.remove(blobId);
+            }
+        }
+    }
+
+    private static final class IndexedBlob {
+        private final Map<String, int[]> lines;
+        private int refs;
+
+        private IndexedBlob(Map<String, int[]> lines) {
+            this.lines = lines;
+        }
+    }
+
+    private record Change(String path, ObjectId oldId, ObjectId newId) {
+    }
+
+    /**
+     * Строка для regex, которая прерывает сопоставление после дедлайна: движок
+     * java.util.regex читает текст только через charAt.
+     */
+    private static final class DeadlineCharSequence implements CharSequence {
+        private final CharSequence text;
+        private final long deadline;
+
+        private DeadlineCharSequence(CharSequence text, long deadline) {
+            this.text = text;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (System.nanoTime() - deadline > 0) {
+                throw new IllegalArgumentException("Регулярное выражение выполняется дольше " + REGEX_TIME_LIMIT_MILLIS + " мс");
+            }
+            return text.charAt(index);
+        }
+
+        @Override
+        public int length() {
+            return text.length();
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return new DeadlineCharSequence(text.subSequence(start, end), deadline);
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+
+    private record Candidate(BranchIndex index, String path, ObjectId blobId, int[] lines) {
+    }
+}
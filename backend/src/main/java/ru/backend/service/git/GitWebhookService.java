@@ -0,0 +1,171 @@
+package ru.backend.service.git;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.backend.rest.application.dto.ApplicationDto;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.rest.git.dto.GitWebhookResultDto;
+import ru.backend.service.application.ApplicationService;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Приём push-вебхуков GitHub/Gitea. Подпись проверяется HMAC-SHA256 по общему секрету
+ * {@code git.webhook.secret}; вершина ветки берётся прямо из payload, поэтому статусы
+ * затронутых приложений пересчитываются без обращения к remote.
+ */
+@Slf4j
+@Service
+public class GitWebhookService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final String GITHUB_SIGNATURE_PREFIX = "sha256=";
+
+    private final GitService gitService;
+    private final ApplicationService applicationService;
+    private final GitRefCache refCache;
+    private final GitMirrorService mirrorService;
+    private final byte[] secret;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, Long> lastDelivery = new ConcurrentHashMap<>();
+
+    public GitWebhookService(GitService gitService,
+                             ApplicationService applicationService,
+                             GitRefCache refCache,
+                             GitMirrorService mirrorService,
+                             @Value("${git.webhook.secret:}") String secret) {
+        this.gitService = gitService;
+        this.applicationService = applicationService;
+        this.refCache = refCache;
+        this.mirrorService = mirrorService;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public boolean isEnabled() {
+        return secret.length > 0;
+    }
+
+    /**
+     * @param signature {@code X-Hub-Signature-256} ({@code sha256=<hex>}) или {@code X-Gitea-Signature} ({@code <hex>})
+     */
+    public boolean verifySignature(byte[] body, String signature) {
+        if (!isEnabled() || signature == null || signature.isBlank()) {
+            return false;
+        }
+        String hex = signature.trim();
+        if (hex.startsWith(GITHUB_SIGNATURE_PREFIX)) {
+            hex = hex.substring(GITHUB_SIGNATURE_PREFIX.length());
+        }
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+            byte[] expected = mac.doFinal(body);
+            return MessageDigest.isEqual(expected, HexFormat.of().parseHex(hex.toLowerCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 недоступен", e);
+        }
+    }
+
+    public GitWebhookResultDto handlePush(byte[] body) throws IOException {
+        JsonNode payload = objectMapper.readTree(body);
+        String ref = payload.path("ref").asText("");
+        if (!ref.startsWith(Constants.R_HEADS)) {
+            throw new IllegalArgumentException("Push не в ветку: " + ref);
+        }
+        String branch = ref.substring(Constants.R_HEADS.length());
+        List<GitConnectionRequestDto> repos = findRepositories(payload.path("repository"));
+        Set<String> repoNames = new LinkedHashSet<>();
+        for (GitConnectionRequestDto repo : repos) {
+            refCache.invalidate(repo);
+            mirrorService.invalidate(repo);
+            lastDelivery.put(repo.getRepoUrl(), System.currentTimeMillis());
+            repoNames.add(repo.getName());
+        }
+
+        // При удалении ветки after — нулевой id, и приложения на этой ветке получат статус ошибки
+        String after = payload.path("after").asText("");
+        Map<String, ObjectId> branches = payload.path("deleted").asBoolean(false) || !ObjectId.isId(after)
+                ? Map.of()
+                : Map.of(branch, ObjectId.fromString(after));
+
+        Map<String, String> statuses = new LinkedHashMap<>();
+        for (ApplicationDto app : applicationService.getAll()) {
+            if (repoNames.contains(app.getRepoName()) && branch.equals(app.getBranch())) {
+                statuses.put(app.getName(), applicationService.applyBranches(app.getName(), branches));
+            }
+        }
+        log.info("Вебхук push {} [{}]: пересчитано приложений {}", repoNames, branch, statuses.size());
+        return new GitWebhookResultDto(String.join(", ", repoNames), branch, branches.isEmpty() ? null : after, statuses);
+    }
+
+    /**
+     * Время последнего вебхука по репозиторию; 0, если вебхуков не было.
+     */
+    public long getLastDelivery(GitConnectionRequestDto repo) {
+        return lastDelivery.getOrDefault(repo.getRepoUrl(), 0L);
+    }
+
+    /**
+     * Все подключения этого репозитория: один remote может быть зарегистрирован под разными
+     * именами и адресами (https и ssh), и приложения каждого из них должны узнать о push.
+     */
+    private List<GitConnectionRequestDto> findRepositories(JsonNode repository) {
+        Set<String> urls = new HashSet<>();
+        for (String field : new String[]{"clone_url", "html_url", "ssh_url", "git_url"}) {
+            String url = repository.path(field).asText("");
+            if (!url.isEmpty()) {
+                urls.add(normalizeUrl(url));
+            }
+        }
+        List<GitConnectionRequestDto> matches = new ArrayList<>();
+        for (GitConnectionRequestDto repo : gitService.getAll()) {
+            if (urls.contains(normalizeUrl(repo.getRepoUrl()))) {
+                matches.add(repo);
+            }
+        }
+        if (matches.isEmpty()) {
+            throw new NoSuchElementException(repository.path("full_name").asText("(без имени)"));
+        }
+        return matches;
+    }
+
+    /**
+     * Приводит https-, ssh- и scp-подобные адреса одного репозитория к виду {@code host/owner/repo}.
+     */
+    private static String normalizeUrl(String url) {
+        String normalized = url.trim().toLowerCase(Locale.ROOT);
+        normalized = normalized.replaceFirst("^[a-z][a-z0-9+.-]*://", "");
+        normalized = normalized.replaceFirst("^[^@/]+@", "");
+        normalized = normalized.replaceFirst("^([^/:]+):(?!\\d)", "$1/");
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.endsWith(".git")) {
+            normalized = normalized.substring(0, normalized.length() - ".git".length());
+        }
+        return normalized;
+    }
+}
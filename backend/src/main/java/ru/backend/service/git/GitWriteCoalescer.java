@@ -0,0 +1,123 @@
+package ru.backend.service.git;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Объединение сохранений: файлы, сохранённые в одну ветку в течение окна
+ * {@code git.write.coalesce-window-ms}, попадают в один коммит. При нулевом окне выключено.
+ */
+@Slf4j
+@Service
+public class GitWriteCoalescer {
+
+    private final long windowMillis;
+    private final Map<String, Batch> open = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public GitWriteCoalescer(@Value("${git.write.coalesce-window-ms:0}") long windowMillis) {
+        this.windowMillis = windowMillis;
+        this.scheduler = windowMillis > 0
+                ? Executors.newScheduledThreadPool(2, runnable -> {
+                    Thread thread = new Thread(runnable, "git-write-coalescer");
+                    thread.setDaemon(true);
+                    return thread;
+                })
+                : null;
+    }
+
+    public boolean isEnabled() {
+        return scheduler != null;
+    }
+
+    /**
+     * Добавляет файл в текущий пакет ветки и ждёт коммита этого пакета.
+     * Повторное сохранение того же пути внутри окна заменяет содержимое.
+     */
+    public ObjectId save(GitConnectionRequestDto repo, String branch, String path, String content, String commitMessage,
+                         BatchCommit commit) throws IOException, GitAPIException {
+        String key = repo.getRepoUrl() + "#" + branch;
+        Batch batch = open.compute(key, (k, current) -> {
+            Batch target = current != null ? current : new Batch(repo, branch);
+            target.files.put(path, content);
+            if (commitMessage != null && !commitMessage.isBlank()) {
+                target.messages.add(commitMessage.trim());
+            }
+            if (current == null) {
+                scheduler.schedule(() -> flush(key, target, commit), windowMillis, TimeUnit.MILLISECONDS);
+            }
+            return target;
+        });
+        return await(batch.result);
+    }
+
+    private void flush(String key, Batch batch, BatchCommit commit) {
+        open.remove(key, batch);
+        try {
+            String message = batch.messages.size() == 1
+                    ? batch.messages.iterator().next()
+                    : "Сохранено файлов: " + batch.files.size() + "\n\n" + String.join("\n", batch.messages);
+            ObjectId commitId = commit.commit(batch.repo, batch.branch, message, batch.files);
+            log.debug("Пакет из {} файлов записан в ветку {} одним коммитом {}", batch.files.size(), batch.branch, commitId.name());
+            batch.result.complete(commitId);
+        } catch (Exception e) {
+            batch.result.completeExceptionally(e);
+        }
+    }
+
+    private ObjectId await(CompletableFuture<ObjectId> result) throws IOException, GitAPIException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание коммита прервано", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioError) throw ioError;
+            if (e.getCause() instanceof GitAPIException gitError) throw gitError;
+            if (e.getCause() instanceof RuntimeException runtimeError) throw runtimeError;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+    }
+
+    @FunctionalInterface
+    public interface BatchCommit {
+        ObjectId commit(GitConnectionRequestDto repo, String branch, String message, Map<String, String> files) throws IOException, GitAPIException;
+    }
+
+    private static final class Batch {
+        private final GitConnectionRequestDto repo;
+        private final String branch;
+        private final Map<String, String> files = new LinkedHashMap<>();
+        private final Set<String> messages = new LinkedHashSet<>();
+        private final CompletableFuture<ObjectId> result = new CompletableFuture<>();
+
+        private Batch(GitConnectionRequestDto repo, String branch) {
+            this.repo = repo;
+            this.branch = branch;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.backend.service.git;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Очередь записи: коммиты в одну пару (репозиторий, ветка) выполняются строго по одному,
+ * в порядке поступления. Разные ветки пишутся параллельно. Полоса ветки живёт, пока в ней
+ * есть ожидающие или выполняющиеся записи.
+ */
+@Service
+public class GitWriteQueue {
+
+    private static final long BACKOFF_STEP_MILLIS = 50;
+
+    private final int maxAttempts;
+    private final Map<String, Lane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final Counter retries;
+    private final Counter rejections;
+
+    public GitWriteQueue(MeterRegistry registry, @Value("${git.write.max-attempts:3}") int maxAttempts) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        Gauge.builder("git.write.queue.depth", depth, AtomicInteger::get)
+                .description("Записи в Git, ожидающие или выполняющиеся")
+                .register(registry);
+        this.retries = Counter.builder("git.write.retries")
+                .description("Повторы push после отказа non-fast-forward")
+                .register(registry);
+        this.rejections = Counter.builder("git.write.rejections")
+                .description("Записи, отклонённые после исчерпания попыток")
+                .register(registry);
+    }
+
+    public <T> T execute(GitConnectionRequestDto repo, String branch, WriteTask<T> task) throws IOException, GitAPIException {
+        String key = repo.getRepoUrl() + "#" + branch;
+        Lane lane = lanes.compute(key, (k, current) -> {
+            Lane acquired = current != null ? current : new Lane();
+            acquired.users++;
+            return acquired;
+        });
+        depth.incrementAndGet();
+        lane.lock.lock();
+        try {
+            return task.run();
+        } finally {
+            lane.lock.unlock();
+            depth.decrementAndGet();
+            // Счётчик меняется только внутри compute по ключу, поэтому пустая полоса удаляется атомарно
+            lanes.computeIfPresent(key, (k, current) -> --current.users == 0 ? null : current);
+        }
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Учитывает повтор и делает паузу со случайной задержкой, растущей с номером попытки,
+     * чтобы конкурирующие писатели не сталкивались снова.
+     */
+    public void retryBackoff(int attempt) {
+        retries.increment();
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(BACKOFF_STEP_MILLIS * attempt, BACKOFF_STEP_MILLIS * attempt * 2));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Ожидание повтора записи прервано", e);
+        }
+    }
+
+    public void recordRejection() {
+        rejections.increment();
+    }
+
+    private static class Lane {
+        final ReentrantLock lock = new ReentrantLock(true);
+        int users;
+    }
+
+    @FunctionalInterface
+    public interface WriteTask<T> {
+        T run() throws IOException, GitAPIException;
+    }
+}
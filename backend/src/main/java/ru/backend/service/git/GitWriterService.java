@@ -1,21 +1,57 @@
 package ru.backend.service.git;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.eclipse.jgit.api.BlameCommand;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.ListBranchCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.api.errors.RefNotFoundException;
+import org.eclipse.jgit.api.errors.TransportException;
+import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.errors.IncorrectObjectTypeException;
+import org.eclipse.jgit.errors.MissingObjectException;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectLoader;
 import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.merge.MergeStrategy;
+import org.eclipse.jgit.merge.ResolveMerger;
+import org.eclipse.jgit.patch.FileHeader;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevTree;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.RevWalkUtils;
+import org.eclipse.jgit.revwalk.TreeRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.transport.PushResult;
 import org.eclipse.jgit.transport.RefSpec;
+import org.eclipse.jgit.transport.RemoteRefUpdate;
 import org.eclipse.jgit.transport.UsernamePasswordCredentialsProvider;
 import org.eclipse.jgit.treewalk.AbstractTreeIterator;
 import org.eclipse.jgit.treewalk.CanonicalTreeParser;
 import org.eclipse.jgit.treewalk.EmptyTreeIterator;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
 import org.springframework.stereotype.Service;
 import ru.backend.rest.git.dto.*;
 import ru.backend.rest.validation.dto.ValidationRequestDto;
@@ -24,20 +60,34 @@ import ru.backend.service.validation.TemplateValidationService;
 import ru.backend.util.EncryptionUtils;
 
 import java.io.ByteArrayOutputStream;
-import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.util.*;
-import java.util.stream.StreamSupport;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipOutputStream;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class GitWriterService {
 
+    private static final int MAX_TREE_PAGE_SIZE = 1000;
+    private static final int MAX_TREE_DEPTH = 8;
+    private static final int MAX_HISTORY_PAGE_SIZE = 200;
+    private static final int MAX_BLAME_CACHE_ENTRIES = 500;
+    // 1980-01-02 UTC: не раньше минимальной даты zip в любом часовом поясе
+    private static final long ARCHIVE_ENTRY_TIME = 315_619_200_000L;
+
+    private final GitMirrorService mirrorService;
+    private final GitRefCache refCache;
+    private final GitWriteQueue writeQueue;
+    private final GitWriteCoalescer writeCoalescer;
+    private final GitDiffCache diffCache;
+    private final GitBlobCache blobCache;
+    private final Cache<BlameKey, GitBlameDto> blameCache = Caffeine.newBuilder()
+            .maximumSize(MAX_BLAME_CACHE_ENTRIES)
+            .build();
+
     private UsernamePasswordCredentialsProvider getCredentials(GitConnectionRequestDto repo) {
         String decryptedToken = repo.getToken() != null && !repo.getToken().isBlank()
                 ? EncryptionUtils.decrypt(repo.getToken())
@@ -47,12 +97,7 @@ public class GitWriterService {
 
     public boolean branchExists(GitConnectionRequestDto repo, String branch) {
         try {
-            return Git.lsRemoteRepository()
-                    .setRemote(repo.getRepoUrl())
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call()
-                    .stream()
-                    .anyMatch(ref -> ref.getName().endsWith("/" + branch));
+            return refCache.getBranch(repo, branch) != null;
         } catch (Exception e) {
             log.error("Ошибка при проверке ветки: {}", e.getMessage());
             return false;
@@ -60,382 +105,593 @@ public class GitWriterService {
     }
 
     public boolean pathExists(GitConnectionRequestDto repo, String branch, String path) {
-        if (path == null || path.isBlank() || ".".equals(path) || "/".equals(path)) {
+        String normalized = normalizePath(path);
+        if (normalized.isBlank() || ".".equals(normalized)) {
             return false;
         }
-        File tempDir = null;
         try {
-            tempDir = Files.createTempDirectory("repo-check").toFile();
-            Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setBranch(branch)
-                    .setDirectory(tempDir)
-                    .setNoCheckout(false)
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call();
-
-            File targetPath = new File(tempDir, path);
-            return targetPath.exists() && targetPath.isDirectory();
-
+            try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+                 ObjectReader reader = lease.getRepository().newObjectReader();
+                 TreeWalk walk = TreeWalk.forPath(reader, normalized, branchTree(lease.getRepository(), branch))) {
+                return walk != null && walk.isSubtree();
+            }
         } catch (Exception e) {
             log.error("Ошибка при проверке пути: {}", e.getMessage());
             return false;
-        } finally {
-            if (tempDir != null && tempDir.exists()) {
-                deleteDirectory(tempDir);
-            }
         }
     }
 
     public FileNodeDto readEntry(GitConnectionRequestDto repo, String branch, String path) {
-        File tempDir = null;
         try {
-            tempDir = Files.createTempDirectory("repo-entry").toFile();
-            Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setBranch(branch)
-                    .setDirectory(tempDir)
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call();
+            return readEntry(repo, path, resolvePath(repo, branch, path));
+        } catch (FileNotFoundException e) {
+            return new FileNodeDto("missing", "missing", "# Файл или папка не найдены", new ArrayList<>());
+        } catch (Exception e) {
+            log.error("Ошибка при чтении entry: {}", e.getMessage());
+            return new FileNodeDto("error", "error", "# ошибка при чтении", new ArrayList<>());
+        }
+    }
 
-            File target = new File(tempDir, path);
-            if (!target.exists()) {
-                return new FileNodeDto("missing", "missing", "# Файл или папка не найдены", new ArrayList<>());
+    public FileNodeDto readEntry(GitConnectionRequestDto repo, String path, PathObject object) throws IOException, GitAPIException {
+        String normalized = normalizePath(path);
+        String name = normalized.substring(normalized.lastIndexOf('/') + 1);
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+             ObjectReader reader = lease.getRepository().newObjectReader()) {
+            if (object.tree()) {
+                return new FileNodeDto(name, "folder", null, readTree(reader, object.id(), Integer.MAX_VALUE));
             }
+            return new FileNodeDto(name, "file", readBlob(reader, object.id()), new ArrayList<>());
+        }
+    }
 
-            if (target.isDirectory()) {
-                List<FileNodeDto> children = readChildrenRecursive(target);
-                return new FileNodeDto(target.getName(), "folder", null, children);
+    /**
+     * Объект по пути на вершине ветки; пустой путь — корневое дерево. Id объекта однозначно
+     * определяет ответ, поэтому служит ETag-ом, а для ответа 304 достаточно этого разрешения.
+     */
+    public PathObject resolvePath(GitConnectionRequestDto repo, String branch, String path) throws IOException, GitAPIException {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            RevTree tree = branchTree(repository, branch);
+            String normalized = normalizePath(path);
+            if (normalized.isEmpty()) {
+                return new PathObject(tree.copy(), true);
+            }
+            try (ObjectReader reader = repository.newObjectReader();
+                 TreeWalk walk = TreeWalk.forPath(reader, normalized, tree)) {
+                if (walk == null) {
+                    throw new FileNotFoundException("Файл или папка не найдены: " + path);
+                }
+                return new PathObject(walk.getObjectId(0), walk.isSubtree());
             }
+        }
+    }
 
-            String content = Files.readString(target.toPath(), StandardCharsets.UTF_8);
-            return new FileNodeDto(target.getName(), "file", content, new ArrayList<>());
+    public record PathObject(ObjectId id, boolean tree) {
+    }
 
+    public List<FileNodeDto> listFiles(GitConnectionRequestDto repo, String branch, String basePath) {
+        try {
+            PathObject dir = resolvePath(repo, branch, basePath);
+            if (dir.tree()) {
+                return listFiles(repo, dir.id());
+            }
+        } catch (FileNotFoundException e) {
+            return new ArrayList<>();
         } catch (Exception e) {
-            log.error("Ошибка при чтении entry: {}", e.getMessage());
-            return new FileNodeDto("error", "error", "# ошибка при чтении", new ArrayList<>());
-        } finally {
-            if (tempDir != null) deleteDirectory(tempDir);
+            log.error("Ошибка при получении файлов: {}", e.getMessage());
         }
+        return new ArrayList<>();
     }
 
-    public List<FileNodeDto> listFiles(GitConnectionRequestDto repo, String branch, String basePath) {
-        File tempDir = null;
+    public List<FileNodeDto> listFiles(GitConnectionRequestDto repo, ObjectId treeId) throws IOException, GitAPIException {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+             ObjectReader reader = lease.getRepository().newObjectReader()) {
+            return readTree(reader, treeId, Integer.MAX_VALUE);
+        }
+    }
+
+    public FileTreePageDto listTree(GitConnectionRequestDto repo, String branch, String path, int depth, String cursor, int limit) throws IOException, GitAPIException {
+        PathObject dir;
         try {
-            tempDir = Files.createTempDirectory("repo-list").toFile();
-            Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setBranch(branch)
-                    .setDirectory(tempDir)
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call();
+            dir = resolvePath(repo, branch, path);
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("Папка не найдена: " + path);
+        }
+        if (!dir.tree()) {
+            throw new FileNotFoundException("Папка не найдена: " + path);
+        }
+        return listTree(repo, path, dir.id(), depth, cursor, limit);
+    }
 
-            File dir = new File(tempDir, basePath);
-            if (dir.exists() && dir.isDirectory()) {
-                return readChildrenRecursive(dir);
+    /**
+     * Страница дерева папки. {@code limit} ограничивает общее число узлов на странице вместе с
+     * вложенными; курсор идёт по записям верхнего уровня. Запись, чьё поддерево не помещается
+     * в остаток страницы, переносится на следующую, а если не помещается и в пустую — отдаётся
+     * свёрнутой папкой без детей, которую клиент раскрывает отдельным запросом.
+     */
+    public FileTreePageDto listTree(GitConnectionRequestDto repo, String path, ObjectId dirId, int depth, String cursor, int limit) throws IOException, GitAPIException {
+        String normalized = normalizePath(path);
+        int pageSize = Math.max(1, Math.min(limit, MAX_TREE_PAGE_SIZE));
+        int maxDepth = Math.max(1, Math.min(depth, MAX_TREE_DEPTH));
+        String after = cursor != null && !cursor.isBlank()
+                ? new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                : null;
+
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+             ObjectReader reader = lease.getRepository().newObjectReader()) {
+            List<FileNodeDto> items = new ArrayList<>();
+            String lastKey = null;
+            boolean hasMore = false;
+            int[] remaining = {pageSize};
+
+            try (TreeWalk walk = new TreeWalk(reader)) {
+                walk.addTree(dirId);
+                while (walk.next()) {
+                    String key = walk.isSubtree() ? walk.getNameString() + "/" : walk.getNameString();
+                    if (after != null && key.compareTo(after) <= 0) {
+                        continue;
+                    }
+                    if (remaining[0] == 0) {
+                        hasMore = true;
+                        break;
+                    }
+                    int before = remaining[0];
+                    FileNodeDto node = toPagedNode(reader, walk, maxDepth, remaining);
+                    if (node == null) {
+                        if (!items.isEmpty()) {
+                            hasMore = true;
+                            break;
+                        }
+                        node = new FileNodeDto(walk.getNameString(), "folder", null, new ArrayList<>());
+                        remaining[0] = before - 1;
+                    }
+                    items.add(node);
+                    lastKey = key;
+                }
             }
 
-        } catch (Exception e) {
-            log.error("Ошибка при получении файлов: {}", e.getMessage());
-        } finally {
-            if (tempDir != null) deleteDirectory(tempDir);
+            String nextCursor = hasMore
+                    ? Base64.getUrlEncoder().withoutPadding().encodeToString(lastKey.getBytes(StandardCharsets.UTF_8))
+                    : null;
+            return new FileTreePageDto(normalized, items, nextCursor);
         }
-        return new ArrayList<>();
     }
 
     public List<String> listFolders(GitConnectionRequestDto repo, String branch, String basePath) {
         List<String> result = new ArrayList<>();
-        File tempDir = null;
-        try {
-            tempDir = Files.createTempDirectory("repo-list").toFile();
-            Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setBranch(branch)
-                    .setDirectory(tempDir)
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call();
-
-            File dir = new File(tempDir, basePath);
-            if (dir.exists() && dir.isDirectory()) {
-                File[] folders = dir.listFiles(File::isDirectory);
-                if (folders != null) {
-                    Arrays.stream(folders).map(File::getName).forEach(result::add);
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+             ObjectReader reader = lease.getRepository().newObjectReader()) {
+            ObjectId dirId = findTree(reader, branchTree(lease.getRepository(), branch), normalizePath(basePath));
+            if (dirId != null) {
+                try (TreeWalk walk = new TreeWalk(reader)) {
+                    walk.addTree(dirId);
+                    while (walk.next()) {
+                        if (walk.isSubtree()) {
+                            result.add(walk.getNameString());
+                        }
+                    }
                 }
             }
 
         } catch (Exception e) {
             log.error("Ошибка при получении списка папок: {}", e.getMessage());
-        } finally {
-            if (tempDir != null) deleteDirectory(tempDir);
         }
         return result;
     }
 
     public List<String> listBranches(GitConnectionRequestDto repo) {
-        File tempDir = null;
         try {
-            tempDir = Files.createTempDirectory("repo-branches").toFile();
-            Git git = Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setDirectory(tempDir)
-                    .setCredentialsProvider(getCredentials(repo))
-                    .setNoCheckout(true)
-                    .call();
-
-            return git.branchList()
-                    .setListMode(ListBranchCommand.ListMode.ALL)
-                    .call()
-                    .stream()
-                    .map(ref -> ref.getName().replace("refs/remotes/origin/", ""))
-                    .distinct()
-                    .toList();
-
+            return new ArrayList<>(refCache.getBranches(repo).keySet());
         } catch (Exception e) {
             log.error("Ошибка при получении списка веток: {}", e.getMessage());
             return Collections.emptyList();
-        } finally {
-            if (tempDir != null) deleteDirectory(tempDir);
         }
     }
 
     public void createBranch(GitConnectionRequestDto repo, String newBranch, String baseBranch) throws Exception {
-        File tempDir = Files.createTempDirectory("repo-create-branch").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(baseBranch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
-
-            git.checkout().setCreateBranch(true).setName(newBranch).call();
-            git.push()
-                    .setCredentialsProvider(getCredentials(repo))
-                    .setPushAll()
-                    .call();
+        writeQueue.execute(repo, newBranch, () -> {
+            Map<String, ObjectId> branches = refCache.getBranches(repo);
+            ObjectId baseId = branches.get(baseBranch);
+            if (baseId == null) {
+                throw new RefNotFoundException("Ветка не найдена: " + baseBranch);
+            }
+            if (branches.containsKey(newBranch)) {
+                throw new IllegalStateException("Ветка уже существует: " + newBranch);
+            }
 
-        } finally {
-            deleteDirectory(tempDir);
-        }
+            try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+                if (!lease.getRepository().getObjectDatabase().has(baseId)) {
+                    // Базовый коммит пришёл после последнего fetch — подтягиваем его в то же зеркало
+                    mirrorService.acquireLatest(repo).close();
+                }
+                Git.wrap(lease.getRepository()).push()
+                        .setRemote(repo.getRepoUrl())
+                        .setRefSpecs(new RefSpec(baseId.name() + ":" + Constants.R_HEADS + newBranch))
+                        .setCredentialsProvider(getCredentials(repo))
+                        .call();
+            }
+            afterPush(repo);
+            return null;
+        });
     }
 
     public void deleteBranch(GitConnectionRequestDto repo, String branch) throws Exception {
-        File tempDir = Files.createTempDirectory("repo-delete-branch").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .setCloneAllBranches(true)
-                .call()) {
-
-            List<String> branches = git.branchList()
-                    .setListMode(ListBranchCommand.ListMode.ALL)
-                    .call()
-                    .stream()
-                    .map(ref -> ref.getName().replace("refs/remotes/origin/", ""))
-                    .filter(name -> !name.equals(branch))
-                    .toList();
-
-            if (branches.isEmpty()) {
+        writeQueue.execute(repo, branch, () -> {
+            Map<String, ObjectId> branches = refCache.getBranches(repo);
+            if (!branches.containsKey(branch)) {
+                throw new RefNotFoundException("Ветка не найдена: " + branch);
+            }
+            if (branches.size() == 1) {
                 throw new IllegalStateException("Невозможно удалить последнюю ветку — больше некуда переключиться.");
             }
 
-            String fallbackBranch = branches.contains("main") ? "main"
-                    : branches.contains("master") ? "master"
-                    : branches.get(0);
+            try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+                Git.wrap(lease.getRepository()).push()
+                        .setRemote(repo.getRepoUrl())
+                        .setRefSpecs(new RefSpec(":" + Constants.R_HEADS + branch))
+                        .setCredentialsProvider(getCredentials(repo))
+                        .call();
+            }
+            afterPush(repo);
+            return null;
+        });
+    }
 
-            git.checkout().setName(fallbackBranch).call();
+    public List<GitCommitDto> getRecentCommits(GitConnectionRequestDto repo, String branch, String path, int offset, int limit) {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            ObjectId head = mirrorService.resolveBranch(repository, branch);
+            return walkHistory(repository, head, path, null, Math.max(offset, 0), limit);
 
-            git.branchDelete()
-                    .setBranchNames(branch)
-                    .setForce(true)
-                    .call();
+        } catch (Exception e) {
+            log.error("Ошибка при получении коммитов: {}", e.getMessage());
+            return new ArrayList<>();
+        }
+    }
 
-            git.push()
-                    .setRefSpecs(new RefSpec(":" + "refs/heads/" + branch))
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call();
+    public GitCommitPageDto getHistory(GitConnectionRequestDto repo, String branch, String path, String cursor, int limit) throws IOException, GitAPIException {
+        ObjectId after = cursor != null && !cursor.isBlank() ? ObjectId.fromString(cursor) : null;
+        int pageSize = Math.max(1, Math.min(limit, MAX_HISTORY_PAGE_SIZE));
 
-        } finally {
-            deleteDirectory(tempDir);
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            ObjectId head = mirrorService.resolveBranch(repository, branch);
+            List<GitCommitDto> items = walkHistory(repository, head, path, after, 0, pageSize);
+
+            String nextCursor = items.size() == pageSize ? items.get(items.size() - 1).getHash() : null;
+            return new GitCommitPageDto(items, nextCursor);
         }
     }
 
-    private List<FileNodeDto> readChildrenRecursive(File dir) {
-        List<FileNodeDto> children = new ArrayList<>();
-        File[] files = dir.listFiles();
-        if (files == null) return children;
+    private List<GitCommitDto> walkHistory(Repository repository, ObjectId head, String path, ObjectId after, int skip, int limit) throws IOException {
+        List<GitCommitDto> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
 
-        for (File file : files) {
-            if (file.isDirectory()) {
-                children.add(new FileNodeDto(file.getName(), "folder", null, readChildrenRecursive(file)));
-            } else {
-                children.add(new FileNodeDto(file.getName(), "file", null, new ArrayList<>()));
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.markStart(walk.parseCommit(head));
+            RevCommit cursor = after != null ? parseCursor(walk, after) : null;
+            String normalized = normalizePath(path);
+            if (!normalized.isEmpty()) {
+                walk.setRevFilter(new TreeRevFilter(walk, new ChangedPathTreeFilter(normalized)));
+            }
+
+            // Обход всегда идёт от вершины: старт с родителей курсора терял бы коммиты
+            // параллельных веток слияния, которые по дате идут после курсора
+            boolean reachedCursor = cursor == null;
+            int skipped = 0;
+            for (RevCommit commit : walk) {
+                if (!reachedCursor) {
+                    reachedCursor = commit.equals(cursor);
+                    continue;
+                }
+                if (skipped < skip) {
+                    skipped++;
+                    continue;
+                }
+                result.add(toCommitDto(commit));
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+            if (!reachedCursor) {
+                throw new IllegalArgumentException("коммит не найден в истории ветки: " + after.name());
             }
         }
-        return children;
+        return result;
     }
 
-    public List<GitCommitDto> getRecentCommits(GitConnectionRequestDto repo, String branch, String path, int offset, int limit) {
-        List<GitCommitDto> allCommits = new ArrayList<>();
-        File tempDir = null;
+    private RevCommit parseCursor(RevWalk walk, ObjectId after) throws IOException {
         try {
-            tempDir = Files.createTempDirectory("repo-log").toFile();
-            Git git = Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setBranch(branch)
-                    .setDirectory(tempDir)
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call();
-
-            Iterable<RevCommit> logs = git.log().addPath(path).call();
-
-            allCommits = StreamSupport.stream(logs.spliterator(), false)
-                    .map(commit -> new GitCommitDto(
-                            commit.getAuthorIdent().getName(),
-                            commit.getShortMessage(),
-                            commit.getAuthorIdent().getWhen().toString(),
-                            commit.getName()
-                    ))
-                    .toList();
-
-        } catch (Exception e) {
-            log.error("Ошибка при получении коммитов: {}", e.getMessage());
-        } finally {
-            if (tempDir != null) deleteDirectory(tempDir);
+            return walk.parseCommit(after);
+        } catch (MissingObjectException | IncorrectObjectTypeException e) {
+            throw new IllegalArgumentException("коммит не найден: " + after.name(), e);
         }
+    }
 
-        return allCommits.stream()
-                .skip(offset)
-                .limit(limit)
-                .toList();
+    private GitCommitDto toCommitDto(RevCommit commit) {
+        return new GitCommitDto(
+                commit.getAuthorIdent().getName(),
+                commit.getShortMessage(),
+                commit.getAuthorIdent().getWhen().toString(),
+                commit.getName()
+        );
     }
 
-    public void pushFile(GitConnectionRequestDto repo, String branch, String folderPath, String filename, String content, String commitMessage) throws IOException, GitAPIException {
-        File tempDir = Files.createTempDirectory("repo-push").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
+    /**
+     * Blame файла на вершине ветки. Результат зависит только от содержимого файла и коммита,
+     * в котором он последний раз менялся, поэтому кэшируется по этой паре и не сбрасывается
+     * коммитами, не затрагивающими файл.
+     */
+    public GitBlameDto blame(GitConnectionRequestDto repo, String branch, String path) throws IOException, GitAPIException {
+        String normalized = normalizePath(path);
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            ObjectId head = mirrorService.resolveBranch(repository, branch);
+
+            ObjectId blobId;
+            try (ObjectReader reader = repository.newObjectReader();
+                 TreeWalk walk = TreeWalk.forPath(reader, normalized, branchTree(repository, branch))) {
+                if (normalized.isEmpty() || walk == null || walk.isSubtree()) {
+                    throw new FileNotFoundException("Файл не найден: " + path);
+                }
+                blobId = walk.getObjectId(0);
+            }
 
-            File dir = new File(tempDir, folderPath);
-            if (!dir.exists() && !dir.mkdirs()) {
-                throw new IOException("Не удалось создать директорию " + folderPath);
+            List<GitCommitDto> lastChange = walkHistory(repository, head, normalized, null, 0, 1);
+            ObjectId startCommit = lastChange.isEmpty() ? head : ObjectId.fromString(lastChange.get(0).getHash());
+            BlameKey key = new BlameKey(blobId, startCommit.copy(), normalized);
+
+            GitBlameDto cached = blameCache.getIfPresent(key);
+            if (cached != null) {
+                return cached;
             }
 
-            File file = new File(dir, filename);
-            Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+            BlameResult result = new BlameCommand(repository)
+                    .setStartCommit(startCommit)
+                    .setFilePath(normalized)
+                    .setFollowFileRenames(true)
+                    .call();
+            if (result == null) {
+                throw new FileNotFoundException("Файл не найден: " + path);
+            }
 
-            git.add().addFilepattern(".").call();
-            git.commit().setMessage(commitMessage).call();
-            git.push().setCredentialsProvider(getCredentials(repo)).call();
+            int lineCount = result.getResultContents().size();
+            List<GitBlameRangeDto> ranges = new ArrayList<>();
+            Map<ObjectId, GitCommitDto> commits = new LinkedHashMap<>();
+            GitBlameRangeDto current = null;
+            for (int line = 0; line < lineCount; line++) {
+                RevCommit source = result.getSourceCommit(line);
+                String sourceId = source != null ? source.getName() : null;
+                if (current != null && Objects.equals(current.getCommit(), sourceId)) {
+                    current.setCount(current.getCount() + 1);
+                    continue;
+                }
+                current = new GitBlameRangeDto(line + 1, 1, sourceId);
+                ranges.add(current);
+                if (source != null) {
+                    commits.computeIfAbsent(source.copy(), id -> toCommitDto(source));
+                }
+            }
 
-        } finally {
-            deleteDirectory(tempDir);
+            GitBlameDto blame = new GitBlameDto(normalized, blobId.name(), lineCount, ranges, new ArrayList<>(commits.values()));
+            blameCache.put(key, blame);
+            return blame;
         }
     }
 
+    private record BlameKey(ObjectId blobId, ObjectId commitId, String path) {
+    }
+
+    public void pushFile(GitConnectionRequestDto repo, String branch, String folderPath, String filename, String content, String commitMessage) throws IOException, GitAPIException {
+        String path = joinPath(folderPath, filename);
+        commitEdits(repo, branch, commitMessage,
+                (index, inserter) -> DirCacheEdits.upsert(index, inserter, path, content.getBytes(StandardCharsets.UTF_8)));
+    }
+
     public void createFolder(GitConnectionRequestDto repo, String branch, String folderPath, String commitMessage) throws IOException, GitAPIException {
-        File tempDir = Files.createTempDirectory("repo-folder").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
+        String path = joinPath(folderPath, ".gitkeep");
+        commitEdits(repo, branch, commitMessage,
+                (index, inserter) -> DirCacheEdits.upsert(index, inserter, path, new byte[0]));
+    }
 
-            File newFolder = new File(tempDir, folderPath);
-            if (!newFolder.exists() && !newFolder.mkdirs()) {
-                throw new IOException("Не удалось создать директорию: " + folderPath);
-            }
+    public void deletePath(GitConnectionRequestDto repo, String branch, String path, String commitMessage) throws IOException, GitAPIException {
+        String normalized = requirePath(path);
+        commitEdits(repo, branch, commitMessage,
+                (index, inserter) -> DirCacheEdits.delete(index, normalized));
+    }
 
-            File gitkeep = new File(newFolder, ".gitkeep");
-            Files.writeString(gitkeep.toPath(), "");
+    public void renamePath(GitConnectionRequestDto repo, String branch, String oldPath, String newPath, String commitMessage) throws IOException, GitAPIException {
+        String from = requirePath(oldPath);
+        String to = requirePath(newPath);
+        commitEdits(repo, branch, commitMessage,
+                (index, inserter) -> DirCacheEdits.rename(index, from, to));
+    }
 
-            git.add().addFilepattern(".").call();
-            git.commit().setMessage(commitMessage).call();
-            git.push().setCredentialsProvider(getCredentials(repo)).call();
+    public ObjectId commitChanges(GitConnectionRequestDto repo, String branch, GitCommitRequest request) throws IOException, GitAPIException {
+        if (request.getUpserts().isEmpty() && request.getDeletes().isEmpty() && request.getRenames().isEmpty()) {
+            throw new IllegalArgumentException("Коммит не содержит изменений");
+        }
+        if (request.getCommitMessage() == null || request.getCommitMessage().isBlank()) {
+            throw new IllegalArgumentException("Не указано сообщение коммита");
+        }
 
-        } finally {
-            deleteDirectory(tempDir);
+        List<GitPathRenameDto> renames = new ArrayList<>();
+        for (GitPathRenameDto rename : request.getRenames()) {
+            renames.add(new GitPathRenameDto(requirePath(rename.getOldPath()), requirePath(rename.getNewPath())));
+        }
+        List<String> deletes = new ArrayList<>();
+        for (String path : request.getDeletes()) {
+            deletes.add(requirePath(path));
+        }
+        Map<String, byte[]> upserts = new LinkedHashMap<>();
+        for (GitFileUpsertDto upsert : request.getUpserts()) {
+            String content = upsert.getContent() != null ? upsert.getContent() : "";
+            upserts.put(requirePath(upsert.getPath()), content.getBytes(StandardCharsets.UTF_8));
         }
+
+        return commitEdits(repo, branch, request.getCommitMessage(), (index, inserter) -> {
+            for (GitPathRenameDto rename : renames) {
+                DirCacheEdits.rename(index, rename.getOldPath(), rename.getNewPath());
+            }
+            for (String path : deletes) {
+                DirCacheEdits.delete(index, path);
+            }
+            for (Map.Entry<String, byte[]> upsert : upserts.entrySet()) {
+                DirCacheEdits.upsert(index, inserter, upsert.getKey(), upsert.getValue());
+            }
+        });
     }
 
-    public void deletePath(GitConnectionRequestDto repo, String branch, String path, String commitMessage) throws IOException, GitAPIException {
-        File tempDir = Files.createTempDirectory("repo-delete").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
+    private String requirePath(String path) {
+        String normalized = normalizePath(path);
+        if (normalized.isEmpty()) {
+            throw new IllegalArgumentException("Пустой путь в списке изменений");
+        }
+        return normalized;
+    }
 
-            File target = new File(tempDir, path);
-            if (!target.exists()) {
-                throw new IOException("Файл или папка не найдены: " + path);
+    private ObjectId commitEdits(GitConnectionRequestDto repo, String branch, String commitMessage, IndexEdit edit) throws IOException, GitAPIException {
+        return commitTree(repo, branch, commitMessage, (repository, parent, inserter) -> {
+            try (ObjectReader reader = repository.newObjectReader()) {
+                DirCache index = DirCacheEdits.fromTree(reader, parent.getTree());
+                edit.apply(index, inserter);
+                return index.writeTree(inserter);
             }
+        });
+    }
 
-            deleteDirectory(target);
-
-            git.rm().addFilepattern(path).call();
-            git.commit().setMessage(commitMessage).call();
-            git.push().setCredentialsProvider(getCredentials(repo)).call();
+    private ObjectId commitTree(GitConnectionRequestDto repo, String branch, String commitMessage, TreeChange change) throws IOException, GitAPIException {
+        return writeQueue.execute(repo, branch, () -> {
+            for (int attempt = 1; ; attempt++) {
+                try (GitMirrorService.Lease lease = mirrorService.acquireLatest(repo)) {
+                    Repository repository = lease.getRepository();
+                    ObjectId head = mirrorService.resolveBranch(repository, branch);
+                    ObjectId commitId = buildCommit(repository, head, commitMessage, change);
+
+                    if (pushCommit(repo, repository, branch, commitId)) {
+                        mirrorService.updateBranch(repo, repository, branch, head, commitId);
+                        refCache.invalidate(repo);
+                        return commitId;
+                    }
+                }
+                if (attempt >= writeQueue.getMaxAttempts()) {
+                    writeQueue.recordRejection();
+                    throw new TransportException("Push отклонён: ветка " + branch + " изменена параллельно, попыток: " + attempt);
+                }
+                // Ветку обновили в обход очереди — применяем те же правки к новой вершине
+                log.warn("Push в ветку {} отклонён (non-fast-forward), повтор {} из {}", branch, attempt + 1, writeQueue.getMaxAttempts());
+                writeQueue.retryBackoff(attempt);
+            }
+        });
+    }
 
-        } finally {
-            deleteDirectory(tempDir);
+    private ObjectId buildCommit(Repository repository, ObjectId head, String commitMessage, TreeChange change) throws IOException {
+        try (RevWalk walk = new RevWalk(repository);
+             ObjectInserter inserter = repository.newObjectInserter()) {
+            RevCommit parent = walk.parseCommit(head);
+            ObjectId treeId = change.apply(repository, parent, inserter);
+
+            PersonIdent ident = new PersonIdent(repository);
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(treeId);
+            commit.setParentId(parent);
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(commitMessage);
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+            return commitId;
         }
     }
 
-    public void renamePath(GitConnectionRequestDto repo, String branch, String oldPath, String newPath, String commitMessage) throws IOException, GitAPIException {
-        File tempDir = Files.createTempDirectory("repo-rename").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
+    private boolean pushCommit(GitConnectionRequestDto repo, Repository repository, String branch, ObjectId commitId) throws GitAPIException {
+        Iterable<PushResult> results = Git.wrap(repository).push()
+                .setRemote(repo.getRepoUrl())
+                .setRefSpecs(new RefSpec(commitId.name() + ":" + Constants.R_HEADS + branch))
                 .setCredentialsProvider(getCredentials(repo))
-                .call()) {
-
-            File oldFile = new File(tempDir, oldPath);
-            File newFile = new File(tempDir, newPath);
-
-            if (!oldFile.exists()) {
-                throw new IOException("Исходный путь не существует: " + oldPath);
+                .call();
+        for (PushResult result : results) {
+            for (RemoteRefUpdate update : result.getRemoteUpdates()) {
+                switch (update.getStatus()) {
+                    case OK, UP_TO_DATE -> {
+                    }
+                    case REJECTED_NONFASTFORWARD, REJECTED_REMOTE_CHANGED -> {
+                        return false;
+                    }
+                    default -> throw new TransportException("Push отклонён: " + update.getStatus()
+                            + (update.getMessage() != null ? " (" + update.getMessage() + ")" : ""));
+                }
             }
+        }
+        return true;
+    }
 
-            if (!oldFile.renameTo(newFile)) {
-                throw new IOException("Не удалось переименовать: " + oldPath + " -> " + newPath);
-            }
+    private String joinPath(String folderPath, String name) {
+        String folder = normalizePath(folderPath);
+        return folder.isEmpty() ? name : folder + "/" + name;
+    }
 
-            git.rm().addFilepattern(oldPath).call();
-            git.add().addFilepattern(newPath).call();
-            git.commit().setMessage(commitMessage).call();
-            git.push().setCredentialsProvider(getCredentials(repo)).call();
+    @FunctionalInterface
+    private interface IndexEdit {
+        void apply(DirCache index, ObjectInserter inserter) throws IOException;
+    }
 
-        } finally {
-            deleteDirectory(tempDir);
-        }
+    @FunctionalInterface
+    private interface TreeChange {
+        ObjectId apply(Repository repository, RevCommit parent, ObjectInserter inserter) throws IOException;
     }
 
     public void revertCommit(GitConnectionRequestDto repo, String branch, String commitHash, String commitMessage) throws IOException, GitAPIException {
-        File tempDir = Files.createTempDirectory("repo-revert").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
-
-            ObjectId commitId = git.getRepository().resolve(commitHash);
-            git.revert()
-                    .include(commitId)
-                    .call();
+        RevCommit target;
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            target = parseRevision(lease.getRepository(), commitHash);
+        }
+        if (target == null) {
+            // Коммит мог появиться после последнего fetch
+            try (GitMirrorService.Lease lease = mirrorService.acquireLatest(repo)) {
+                target = parseRevision(lease.getRepository(), commitHash);
+            }
+        }
+        if (target == null) {
+            throw new IllegalArgumentException("коммит не найден: " + commitHash);
+        }
+        revert(repo, branch, target, commitMessage);
+    }
 
-            git.commit().setMessage(commitMessage).call();
-            git.push().setCredentialsProvider(getCredentials(repo)).call();
+    /**
+     * Откат без рабочей копии: трёхстороннее слияние в памяти, где база — откатываемый коммит,
+     * а вторая сторона — его родитель. Результат коммитится поверх вершины ветки, как обычная правка.
+     */
+    private ObjectId revert(GitConnectionRequestDto repo, String branch, RevCommit target, String commitMessage) throws IOException, GitAPIException {
+        if (target.getParentCount() > 1) {
+            throw new IllegalArgumentException("Откат коммита слияния не поддерживается: " + target.name());
+        }
+        String message = commitMessage != null && !commitMessage.isBlank()
+                ? commitMessage
+                : "Revert \"" + target.getShortMessage() + "\"\n\nThis reverts commit " + target.name() + ".\n";
+        return commitTree(repo, branch, message, (repository, head, inserter) -> {
+            ObjectId before = target.getParentCount() == 1 ? target.getParent(0) : inserter.insert(new TreeFormatter());
+            ResolveMerger merger = (ResolveMerger) MergeStrategy.RESOLVE.newMerger(repository, true);
+            merger.setObjectInserter(inserter);
+            merger.setBase(target);
+            if (!merger.merge(false, head, before)) {
+                throw new IllegalStateException("Откат конфликтует с изменениями ветки: " + merger.getUnmergedPaths());
+            }
+            return merger.getResultTreeId();
+        });
+    }
 
-        } finally {
-            deleteDirectory(tempDir);
+    private RevCommit parseRevision(Repository repository, String revision) throws IOException {
+        ObjectId id = repository.resolve(revision);
+        if (id == null) {
+            return null;
+        }
+        try (RevWalk walk = new RevWalk(repository)) {
+            return walk.parseCommit(id);
+        } catch (MissingObjectException e) {
+            return null;
         }
     }
 
@@ -458,155 +714,431 @@ public class GitWriterService {
             if (!result.isValid()) return result;
         }
 
-        this.pushFile(repo, branch, folderPath, filename, request.getContent(), request.getCommitMessage());
+        if (writeCoalescer.isEnabled()) {
+            writeCoalescer.save(repo, branch, joinPath(folderPath, filename), request.getContent(), request.getCommitMessage(),
+                    (batchRepo, batchBranch, message, files) -> commitChanges(batchRepo, batchBranch, new GitCommitRequest(message,
+                            files.entrySet().stream().map(e -> new GitFileUpsertDto(e.getKey(), e.getValue())).toList(), null, null)));
+        } else {
+            this.pushFile(repo, branch, folderPath, filename, request.getContent(), request.getCommitMessage());
+        }
         return new ValidationResultDto(true, "Файл сохранён в Git");
     }
 
     public String getFileContent(GitConnectionRequestDto repo, String branch, String path) throws IOException, GitAPIException {
-        File tempDir = Files.createTempDirectory("repo-read").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
+        if (normalizePath(path).isEmpty()) {
+            throw new FileNotFoundException("Файл не найден: " + path);
+        }
+        PathObject file;
+        try {
+            file = resolvePath(repo, branch, path);
+        } catch (FileNotFoundException e) {
+            throw new FileNotFoundException("Файл не найден: " + path);
+        }
+        if (file.tree()) {
+            throw new FileNotFoundException("Файл не найден: " + path);
+        }
+        return readFile(repo, file.id());
+    }
 
-            File targetFile = new File(tempDir, path);
-            if (!targetFile.exists() || targetFile.isDirectory()) {
-                throw new FileNotFoundException("Файл не найден: " + path);
+    public String readFile(GitConnectionRequestDto repo, ObjectId blobId) throws IOException, GitAPIException {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+             ObjectReader reader = lease.getRepository().newObjectReader()) {
+            return readBlob(reader, blobId);
+        }
+    }
+
+    private RevTree branchTree(Repository repository, String branch) throws IOException, GitAPIException {
+        ObjectId head = mirrorService.resolveBranch(repository, branch);
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            return revWalk.parseCommit(head).getTree();
+        }
+    }
+
+    private ObjectId findTree(ObjectReader reader, RevTree root, String path) throws IOException {
+        if (path.isEmpty()) {
+            return root;
+        }
+        try (TreeWalk walk = TreeWalk.forPath(reader, path, root)) {
+            return walk != null && walk.isSubtree() ? walk.getObjectId(0) : null;
+        }
+    }
+
+    private List<FileNodeDto> readTree(ObjectReader reader, AnyObjectId treeId, int depth) throws IOException {
+        List<FileNodeDto> children = new ArrayList<>();
+        try (TreeWalk walk = new TreeWalk(reader)) {
+            walk.addTree(treeId);
+            while (walk.next()) {
+                children.add(toFileNode(reader, walk, depth));
             }
+        }
+        return children;
+    }
 
-            return Files.readString(targetFile.toPath(), StandardCharsets.UTF_8);
+    private FileNodeDto toFileNode(ObjectReader reader, TreeWalk walk, int depth) throws IOException {
+        if (!walk.isSubtree()) {
+            return new FileNodeDto(walk.getNameString(), "file", null, new ArrayList<>());
+        }
+        List<FileNodeDto> children = depth > 1
+                ? readTree(reader, walk.getObjectId(0), depth - 1)
+                : new ArrayList<>();
+        return new FileNodeDto(walk.getNameString(), "folder", null, children);
+    }
 
-        } finally {
-            deleteDirectory(tempDir);
+    /**
+     * Узел с поддеревом до глубины {@code depth}, если всё поддерево укладывается в остаток
+     * страницы {@code remaining[0]}; иначе {@code null}.
+     */
+    private FileNodeDto toPagedNode(ObjectReader reader, TreeWalk walk, int depth, int[] remaining) throws IOException {
+        if (--remaining[0] < 0) {
+            return null;
+        }
+        if (!walk.isSubtree()) {
+            return new FileNodeDto(walk.getNameString(), "file", null, new ArrayList<>());
+        }
+        List<FileNodeDto> children = new ArrayList<>();
+        if (depth > 1) {
+            try (TreeWalk subtree = new TreeWalk(reader)) {
+                subtree.addTree(walk.getObjectId(0));
+                while (subtree.next()) {
+                    FileNodeDto child = toPagedNode(reader, subtree, depth - 1, remaining);
+                    if (child == null) {
+                        return null;
+                    }
+                    children.add(child);
+                }
+            }
         }
+        return new FileNodeDto(walk.getNameString(), "folder", null, children);
     }
 
-    private void deleteDirectory(File dir) {
-        if (dir == null || !dir.exists()) return;
-        File[] files = dir.listFiles();
-        if (files != null) {
-            for (File f : files) deleteDirectory(f);
+    private String readBlob(ObjectReader reader, ObjectId blobId) throws IOException {
+        return new String(blobCache.read(reader, blobId), StandardCharsets.UTF_8);
+    }
+
+    private String normalizePath(String path) {
+        if (path == null) return "";
+        String normalized = path.replace('\\', '/');
+        while (normalized.startsWith("/") || normalized.startsWith("./")) {
+            normalized = normalized.substring(normalized.startsWith("/") ? 1 : 2);
+        }
+        while (normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
         }
-        dir.delete();
+        return normalized;
+    }
+
+    private void afterPush(GitConnectionRequestDto repo) {
+        mirrorService.invalidate(repo);
+        refCache.invalidate(repo);
     }
 
     public void revertLastCommit(GitConnectionRequestDto repo, String branch) {
-        File tempDir = null;
         try {
-            tempDir = Files.createTempDirectory("repo-revert-last").toFile();
-            try (Git git = Git.cloneRepository()
-                    .setURI(repo.getRepoUrl())
-                    .setBranch(branch)
-                    .setDirectory(tempDir)
-                    .setCredentialsProvider(getCredentials(repo))
-                    .call()) {
-
-                Iterable<RevCommit> commits = git.log().setMaxCount(1).call();
-                RevCommit lastCommit = commits.iterator().next();
-
-                git.revert()
-                        .include(lastCommit)
-                        .call();
-
-                git.push()
-                        .setCredentialsProvider(getCredentials(repo))
-                        .call();
-            }
+            // Вершина определяется в той же полосе очереди, что и откат: чужая запись не вклинится между ними
+            writeQueue.execute(repo, branch, () -> {
+                RevCommit last;
+                try (GitMirrorService.Lease lease = mirrorService.acquireLatest(repo)) {
+                    Repository repository = lease.getRepository();
+                    last = parseRevision(repository, mirrorService.resolveBranch(repository, branch).name());
+                }
+                return revert(repo, branch, last, null);
+            });
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при откате последнего коммита: " + e.getMessage(), e);
-        } finally {
-            if (tempDir != null) deleteDirectory(tempDir);
         }
     }
 
     public String getCommitDiff(GitConnectionRequestDto repo, String branch, String commitHash, String path) throws Exception {
-        File tempDir = Files.createTempDirectory("repo-diff").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
+        return getDiff(repo, branch, null, commitHash, path);
+    }
+
+    /**
+     * Патч коммита относительно первого родителя либо, если задан {@code base}, разница
+     * между деревьями двух коммитов. Пустой {@code path} — все файлы.
+     */
+    public String getDiff(GitConnectionRequestDto repo, String branch, String base, String commitHash, String path) throws Exception {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            mirrorService.resolveBranch(repository, branch);
+            DiffRange range;
+            try {
+                range = resolveDiffRange(repository, base, commitHash);
+            } catch (RefNotFoundException e) {
+                return e.getMessage();
+            }
+            String filter = normalizePath(path);
+
+            return diffCache.get(new GitDiffCache.Key(range.baseId(), range.headId(), filter, "patch"), () -> {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (DiffFormatter formatter = newDiffFormatter(repository, filter, out)) {
+                    formatter.format(scanDiff(repository, formatter, range));
+                }
+                return out.toString(StandardCharsets.UTF_8);
+            }, patch -> 2L * patch.length());
+        }
+    }
 
-            Repository repository = git.getRepository();
-            ObjectReader reader = repository.newObjectReader();
+    public GitDiffDto getDiffStat(GitConnectionRequestDto repo, String branch, String base, String commitHash, String path) throws IOException, GitAPIException {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            mirrorService.resolveBranch(repository, branch);
+            DiffRange range = resolveDiffRange(repository, base, commitHash);
+            String filter = normalizePath(path);
+
+            return diffCache.get(new GitDiffCache.Key(range.baseId(), range.headId(), filter, "stat"), () ->
+                    new GitDiffDto(range.baseId() != null ? range.baseId().name() : null, range.headId().name(),
+                            diffFiles(repository, range, filter)),
+                    stat -> 256L * (stat.getFiles().size() + 1));
+        }
+    }
 
-            ObjectId commitId = repository.resolve(commitHash);
-            if (commitId == null) {
-                return "Коммит не найден: " + commitHash;
+    /**
+     * Сравнение двух ревизий, как в запросе на слияние: сколько коммитов {@code head} нет в
+     * {@code base} (ahead) и наоборот (behind), и файлы, изменённые в {@code head} с общей базы.
+     * Счётчики считаются по всей ветке, {@code path} ограничивает только список файлов.
+     */
+    public GitCompareDto compare(GitConnectionRequestDto repo, String base, String head, String path) throws IOException, GitAPIException {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            ObjectId baseId;
+            ObjectId headId;
+            try (RevWalk walk = new RevWalk(repository)) {
+                baseId = requireCommit(repository, walk, base);
+                headId = requireCommit(repository, walk, head);
             }
+            String filter = normalizePath(path);
 
-            RevCommit commit = repository.parseCommit(commitId);
-            CanonicalTreeParser newTreeParser = new CanonicalTreeParser();
-            newTreeParser.reset(reader, commit.getTree());
+            return diffCache.get(new GitDiffCache.Key(baseId, headId, filter, "compare"),
+                    () -> buildComparison(repository, baseId, headId, filter),
+                    comparison -> 256L * (comparison.getFiles().size() + 1));
+        }
+    }
 
-            AbstractTreeIterator oldTreeParser;
+    private GitCompareDto buildComparison(Repository repository, ObjectId baseId, ObjectId headId, String filter) throws IOException {
+        RevCommit mergeBase;
+        try (RevWalk walk = new RevWalk(repository)) {
+            walk.setRevFilter(RevFilter.MERGE_BASE);
+            walk.markStart(walk.parseCommit(baseId));
+            walk.markStart(walk.parseCommit(headId));
+            mergeBase = walk.next();
+        }
 
-            if (commit.getParentCount() > 0) {
-                RevCommit parent = commit.getParent(0);
-                parent = repository.parseCommit(parent.getId());
+        try (RevWalk walk = new RevWalk(repository)) {
+            RevCommit baseCommit = walk.parseCommit(baseId);
+            RevCommit headCommit = walk.parseCommit(headId);
+            int ahead = RevWalkUtils.count(walk, headCommit, baseCommit);
+            int behind = RevWalkUtils.count(walk, baseCommit, headCommit);
+
+            // Без общей базы (несвязанные истории) сравниваем деревья напрямую
+            RevCommit from = mergeBase != null ? walk.parseCommit(mergeBase) : baseCommit;
+            DiffRange range = new DiffRange(from.copy(), from.getTree().copy(), headCommit.copy(), headCommit.getTree().copy());
+
+            GitCompareDto comparison = new GitCompareDto(baseId.name(), headId.name(), diffFiles(repository, range, filter));
+            comparison.setMergeBase(mergeBase != null ? mergeBase.name() : null);
+            comparison.setAhead(ahead);
+            comparison.setBehind(behind);
+            return comparison;
+        }
+    }
 
-                CanonicalTreeParser oldTree = new CanonicalTreeParser();
-                oldTree.reset(reader, parent.getTree());
-                oldTreeParser = oldTree;
-            } else {
-                oldTreeParser = new EmptyTreeIterator();
-            }
+    private ObjectId requireCommit(Repository repository, RevWalk walk, String revision) throws IOException, RefNotFoundException {
+        if (revision == null || revision.isBlank()) {
+            throw new IllegalArgumentException("Не указана ревизия для сравнения");
+        }
+        RevCommit commit = parseCommitOrNull(repository, walk, revision);
+        if (commit == null) {
+            throw new RefNotFoundException("Коммит не найден: " + revision);
+        }
+        return commit.copy();
+    }
 
-            ByteArrayOutputStream out = new ByteArrayOutputStream();
-            try (DiffFormatter diffFormatter = new DiffFormatter(out)) {
-                diffFormatter.setRepository(repository);
-                diffFormatter.setPathFilter(PathFilter.create(path));
-                List<DiffEntry> entries = diffFormatter.scan(oldTreeParser, newTreeParser);
+    private List<GitDiffFileDto> diffFiles(Repository repository, DiffRange range, String filter) throws IOException {
+        List<GitDiffFileDto> files = new ArrayList<>();
+        try (DiffFormatter formatter = newDiffFormatter(repository, filter, DisabledOutputStream.INSTANCE)) {
+            for (DiffEntry entry : scanDiff(repository, formatter, range)) {
+                files.add(toDiffFile(formatter, entry));
+            }
+        }
+        return files;
+    }
 
-                if (entries.isEmpty()) {
-                    return "";
+    private DiffRange resolveDiffRange(Repository repository, String base, String commitHash) throws IOException, RefNotFoundException {
+        try (RevWalk walk = new RevWalk(repository)) {
+            RevCommit head = parseCommitOrNull(repository, walk, commitHash);
+            if (head == null) {
+                throw new RefNotFoundException("Коммит не найден: " + commitHash);
+            }
+            if (base != null && !base.isBlank()) {
+                RevCommit baseCommit = parseCommitOrNull(repository, walk, base);
+                if (baseCommit == null) {
+                    throw new RefNotFoundException("Коммит не найден: " + base);
                 }
+                return new DiffRange(baseCommit.copy(), baseCommit.getTree().copy(), head.copy(), head.getTree().copy());
+            }
+            if (head.getParentCount() == 0) {
+                return new DiffRange(null, null, head.copy(), head.getTree().copy());
+            }
+            RevCommit parent = walk.parseCommit(head.getParent(0));
+            return new DiffRange(parent.copy(), parent.getTree().copy(), head.copy(), head.getTree().copy());
+        }
+    }
 
-                for (DiffEntry entry : entries) {
-                    diffFormatter.format(entry);
-                }
+    private RevCommit parseCommitOrNull(Repository repository, RevWalk walk, String revision) throws IOException {
+        ObjectId id = repository.resolve(revision);
+        if (id == null) {
+            return null;
+        }
+        try {
+            return walk.parseCommit(id);
+        } catch (IncorrectObjectTypeException | MissingObjectException e) {
+            return null;
+        }
+    }
 
-                return out.toString(StandardCharsets.UTF_8);
+    private DiffFormatter newDiffFormatter(Repository repository, String path, OutputStream out) {
+        DiffFormatter formatter = new DiffFormatter(out);
+        formatter.setRepository(repository);
+        formatter.setDetectRenames(true);
+        if (!path.isEmpty()) {
+            formatter.setPathFilter(PathFilter.create(path));
+        }
+        return formatter;
+    }
+
+    private List<DiffEntry> scanDiff(Repository repository, DiffFormatter formatter, DiffRange range) throws IOException {
+        try (ObjectReader reader = repository.newObjectReader()) {
+            AbstractTreeIterator oldTree = new EmptyTreeIterator();
+            if (range.baseTree() != null) {
+                CanonicalTreeParser parser = new CanonicalTreeParser();
+                parser.reset(reader, range.baseTree());
+                oldTree = parser;
             }
+            CanonicalTreeParser newTree = new CanonicalTreeParser();
+            newTree.reset(reader, range.headTree());
+            return formatter.scan(oldTree, newTree);
+        }
+    }
 
-        } finally {
-            deleteDirectory(tempDir);
+    private GitDiffFileDto toDiffFile(DiffFormatter formatter, DiffEntry entry) throws IOException {
+        FileHeader header = formatter.toFileHeader(entry);
+        int additions = 0;
+        int deletions = 0;
+        for (Edit edit : header.toEditList()) {
+            additions += edit.getLengthB();
+            deletions += edit.getLengthA();
         }
+        return new GitDiffFileDto(
+                entry.getChangeType().name(),
+                entry.getChangeType() == DiffEntry.ChangeType.ADD ? null : entry.getOldPath(),
+                entry.getChangeType() == DiffEntry.ChangeType.DELETE ? null : entry.getNewPath(),
+                additions,
+                deletions,
+                header.getPatchType() != FileHeader.PatchType.UNIFIED
+        );
     }
 
-    public byte[] downloadArchive(GitConnectionRequestDto repo, String branch) throws IOException, GitAPIException {
-        File tempDir = Files.createTempDirectory("repo-archive").toFile();
-        try (Git git = Git.cloneRepository()
-                .setURI(repo.getRepoUrl())
-                .setBranch(branch)
-                .setDirectory(tempDir)
-                .setCredentialsProvider(getCredentials(repo))
-                .call()) {
+    private record DiffRange(ObjectId baseId, ObjectId baseTree, ObjectId headId, ObjectId headTree) {
+    }
 
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (ZipOutputStream zos = new ZipOutputStream(baos)) {
-                zipDirectory(tempDir, tempDir, zos);
+    public ObjectId resolveArchiveTree(GitConnectionRequestDto repo, String branch, String path) throws IOException, GitAPIException {
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository repository = lease.getRepository();
+            RevTree tree = branchTree(repository, branch);
+            try (ObjectReader reader = repository.newObjectReader()) {
+                ObjectId treeId = findTree(reader, tree, normalizePath(path));
+                if (treeId == null) {
+                    throw new FileNotFoundException("Папка не найдена: " + path);
+                }
+                return treeId;
             }
-            return baos.toByteArray();
+        }
+    }
+
+    /**
+     * Zip или tar.gz дерева прямо из базы объектов зеркала. Время записей фиксировано, поэтому
+     * байты архива зависят только от дерева и формата — на этом держится сильный ETag по id дерева.
+     */
+    public void writeArchive(GitConnectionRequestDto repo, ObjectId treeId, String format, OutputStream out) throws IOException, GitAPIException {
+        String archiveFormat = archiveFormat(format);
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo);
+             TreeWalk walk = new TreeWalk(lease.getRepository())) {
+            walk.addTree(treeId);
+            walk.setRecursive(true);
+            if ("zip".equals(archiveFormat)) {
+                writeZip(walk, out);
+            } else {
+                writeTgz(walk, out);
+            }
+        }
+    }
 
-        } finally {
-            deleteDirectory(tempDir);
+    private void writeZip(TreeWalk walk, OutputStream out) throws IOException {
+        ZipArchiveOutputStream zip = new ZipArchiveOutputStream(out);
+        ObjectReader reader = walk.getObjectReader();
+        while (walk.next()) {
+            FileMode mode = walk.getFileMode(0);
+            if (mode == FileMode.GITLINK) {
+                continue;
+            }
+            ObjectLoader loader = reader.open(walk.getObjectId(0));
+            ZipArchiveEntry entry = new ZipArchiveEntry(walk.getPathString());
+            entry.setTime(ARCHIVE_ENTRY_TIME);
+            entry.setUnixMode(archiveMode(mode));
+            entry.setSize(loader.getSize());
+            zip.putArchiveEntry(entry);
+            loader.copyTo(zip);
+            zip.closeArchiveEntry();
         }
+        zip.finish();
     }
 
-    private void zipDirectory(File rootDir, File sourceDir, ZipOutputStream zos) throws IOException {
-        for (File file : Objects.requireNonNull(sourceDir.listFiles())) {
-            String name = rootDir.toURI().relativize(file.toURI()).getPath();
-            if (file.isDirectory()) {
-                zipDirectory(rootDir, file, zos);
+    private void writeTgz(TreeWalk walk, OutputStream out) throws IOException {
+        GzipCompressorOutputStream gzip = new GzipCompressorOutputStream(out);
+        TarArchiveOutputStream tar = new TarArchiveOutputStream(gzip, StandardCharsets.UTF_8.name());
+        tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        ObjectReader reader = walk.getObjectReader();
+        while (walk.next()) {
+            FileMode mode = walk.getFileMode(0);
+            if (mode == FileMode.GITLINK) {
+                continue;
+            }
+            ObjectLoader loader = reader.open(walk.getObjectId(0));
+            TarArchiveEntry entry = mode == FileMode.SYMLINK
+                    ? new TarArchiveEntry(walk.getPathString(), TarConstants.LF_SYMLINK)
+                    : new TarArchiveEntry(walk.getPathString());
+            entry.setModTime(ARCHIVE_ENTRY_TIME);
+            entry.setMode(archiveMode(mode));
+            // Иначе в заголовок попадает пользователь процесса
+            entry.setUserName("");
+            entry.setGroupName("");
+            if (mode == FileMode.SYMLINK) {
+                entry.setLinkName(new String(loader.getCachedBytes(), StandardCharsets.UTF_8));
+                tar.putArchiveEntry(entry);
             } else {
-                zos.putNextEntry(new ZipEntry(name));
-                Files.copy(file.toPath(), zos);
-                zos.closeEntry();
+                entry.setSize(loader.getSize());
+                tar.putArchiveEntry(entry);
+                loader.copyTo(tar);
             }
+            tar.closeArchiveEntry();
+        }
+        tar.finish();
+        gzip.finish();
+    }
+
+    private static int archiveMode(FileMode mode) {
+        if (mode == FileMode.SYMLINK) {
+            return 0120777;
+        }
+        return mode == FileMode.EXECUTABLE_FILE ? 0100755 : 0100644;
+    }
+
+    public String archiveFormat(String format) {
+        if (format == null || format.isBlank() || "zip".equalsIgnoreCase(format)) {
+            return "zip";
+        }
+        if ("tar.gz".equalsIgnoreCase(format) || "tgz".equalsIgnoreCase(format)) {
+            return "tgz";
         }
+        throw new IllegalArgumentException("Неподдерживаемый формат архива: " + format);
     }
 }
@@ -4,11 +4,15 @@ import com.jcraft.jsch.ChannelExec;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.Session;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
 import org.springframework.stereotype.Service;
 import ru.backend.rest.application.dto.ApplicationDto;
 import ru.backend.rest.git.dto.FileNodeDto;
+import ru.backend.rest.git.dto.GitCommitRequest;
 import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.rest.git.dto.GitFileUpsertDto;
 import ru.backend.rest.settings.dto.ServersDto;
 import ru.backend.service.application.ApplicationService;
 import ru.backend.service.settings.ServersService;
@@ -22,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class GitflowGeneratorService {
@@ -44,32 +49,17 @@ public class GitflowGeneratorService {
         String workflowContent = generateDeployYml(app, server);
         String rollbackScriptContent = generateRollbackSh(app);
 
-        gitWriterService.pushFile(
-                repo,
-                branch,
-                appPath,
-                "deploy.sh",
-                deployScriptContent,
-                "Добавлен автоматический deploy.sh"
-        );
-
-        gitWriterService.pushFile(
-                repo,
-                branch,
-                ".github/workflows",
-                "deploy.yml",
-                workflowContent,
-                "Добавлен GitHub Actions workflow"
-        );
-
-        gitWriterService.pushFile(
-                repo,
-                branch,
-                appPath,
-                "rollback.sh",
-                rollbackScriptContent,
-                "Добавлен автоматический rollback.sh"
-        );
+        String scriptsDir = appPath == null || appPath.isBlank() ? "" : appPath + "/";
+        ObjectId commitId = gitWriterService.commitChanges(repo, branch, new GitCommitRequest(
+                "Добавлены автоматические deploy.sh, rollback.sh и GitHub Actions workflow",
+                List.of(
+                        new GitFileUpsertDto(scriptsDir + "deploy.sh", deployScriptContent),
+                        new GitFileUpsertDto(".github/workflows/deploy.yml", workflowContent),
+                        new GitFileUpsertDto(scriptsDir + "rollback.sh", rollbackScriptContent)
+                ),
+                null,
+                null
+        ));
 
         try {
             Map<String, String> scripts = new HashMap<>();
@@ -82,6 +72,13 @@ public class GitflowGeneratorService {
             gitWriterService.revertLastCommit(repo, branch);
             throw new RuntimeException("Откат последнего коммита в Git из-за ошибки при деплое", ex);
         }
+
+        // Деплой уже прошёл: ошибка учёта не повод откатывать рабочий коммит
+        try {
+            applicationService.markDeployed(app.getName(), commitId.name());
+        } catch (Exception e) {
+            log.warn("Не удалось сохранить развёрнутый коммит {} приложения {}: {}", commitId.name(), app.getName(), e.getMessage());
+        }
     }
 
     private void runDeployScriptOverSsh(ServersDto server, String remoteDir) {
@@ -0,0 +1,93 @@
+package ru.backend.schedule;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+import ru.backend.rest.application.dto.ApplicationDto;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.service.application.ApplicationService;
+import ru.backend.service.git.GitRefCache;
+import ru.backend.service.git.GitService;
+import ru.backend.service.git.GitWebhookService;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AutoSyncSchedulerTest {
+
+    @Test
+    void rejectsTransportTimeoutNotBelowAppDeadline() {
+        GitRefCache refCache = new GitRefCache(10000, 20);
+
+        assertThatThrownBy(() -> new AutoSyncScheduler(null, null, refCache, null, new SimpleMeterRegistry(),
+                60000, 10000, 1, 20000, 900000, 1000, 64))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("git.refs.timeout-s");
+    }
+
+    @Test
+    void appsDueTogetherShareOneRefSnapshotPerRepository() throws Exception {
+        GitConnectionRequestDto infra = repo("infra");
+        GitConnectionRequestDto web = repo("web");
+        List<ApplicationDto> apps = List.of(app("api", "infra"), app("worker", "infra"), app("site", "web"));
+        Map<String, ObjectId> infraBranches = Map.of("main", ObjectId.zeroId());
+        Map<String, ObjectId> webBranches = Map.of("main", ObjectId.zeroId());
+
+        ApplicationService applicationService = mock(ApplicationService.class);
+        GitService gitService = mock(GitService.class);
+        GitRefCache refCache = mock(GitRefCache.class);
+        GitWebhookService webhookService = mock(GitWebhookService.class);
+        when(applicationService.getAll()).thenReturn(apps);
+        for (ApplicationDto app : apps) {
+            when(applicationService.getByName(app.getName())).thenReturn(app);
+        }
+        when(applicationService.applyBranches(any(), any())).thenReturn("Synced");
+        when(gitService.getAll()).thenReturn(List.of(infra, web));
+        when(gitService.getByName("infra")).thenReturn(infra);
+        when(gitService.getByName("web")).thenReturn(web);
+        when(refCache.getBranches(infra)).thenReturn(infraBranches);
+        when(refCache.getBranches(web)).thenReturn(webBranches);
+
+        // Шаг колеса равен интервалу: все три приложения наступают в первом же тике
+        AutoSyncScheduler scheduler = new AutoSyncScheduler(applicationService, gitService, refCache, webhookService,
+                new SimpleMeterRegistry(), 1000, 1000, 4, 20000, 900000, 1000, 64);
+        try {
+            scheduler.tick();
+            Thread.sleep(1100);
+            scheduler.tick();
+
+            verify(applicationService, timeout(5000)).applyBranches("api", infraBranches);
+            verify(applicationService, timeout(5000)).applyBranches("worker", infraBranches);
+            verify(applicationService, timeout(5000)).applyBranches("site", webBranches);
+            verify(refCache, times(1)).getBranches(same(infra));
+            verify(refCache, times(1)).getBranches(same(web));
+        } finally {
+            scheduler.close();
+        }
+    }
+
+    private static GitConnectionRequestDto repo(String name) {
+        GitConnectionRequestDto repo = new GitConnectionRequestDto();
+        repo.setName(name);
+        repo.setRepoUrl("https://git.example.com/" + name + ".git");
+        repo.setBranch("main");
+        return repo;
+    }
+
+    private static ApplicationDto app(String name, String repoName) {
+        ApplicationDto app = new ApplicationDto();
+        app.setName(name);
+        app.setRepoName(repoName);
+        app.setSyncStrategy("auto:1s");
+        return app;
+    }
+}
@@ -0,0 +1,61 @@
+package ru.backend.schedule;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TimingWheelTest {
+
+    private static final long START = 1_000_000;
+
+    @Test
+    void firesTaskOnItsTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, START);
+        wheel.schedule("a", 250);
+
+        assertThat(wheel.advance(START + 200)).isEmpty();
+        assertThat(wheel.advance(START + 300)).containsExactly("a");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void keepsTasksBeyondOneRevolutionUntilTheirRound() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, START);
+        wheel.schedule("near", 200);
+        wheel.schedule("far", 1000);
+
+        assertThat(wheel.advance(START + 200)).containsExactly("near");
+        assertThat(wheel.advance(START + 900)).isEmpty();
+        assertThat(wheel.advance(START + 1000)).containsExactly("far");
+    }
+
+    @Test
+    void catchesUpMissedTicks() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, START);
+        wheel.schedule("a", 100);
+        wheel.schedule("b", 300);
+        wheel.schedule("c", 500);
+
+        assertThat(wheel.advance(START + 400)).containsExactly("a", "b");
+        assertThat(wheel.advance(START + 500)).containsExactly("c");
+    }
+
+    @Test
+    void dropsCancelledTasks() {
+        TimingWheel<String> wheel = new TimingWheel<>(100, 8, START);
+        TimingWheel.Timeout<String> cancelled = wheel.schedule("a", 100);
+        wheel.schedule("b", 100);
+        cancelled.cancel();
+
+        assertThat(cancelled.isCancelled()).isTrue();
+        assertThat(wheel.advance(START + 100)).containsExactly("b");
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void rejectsNonPositiveTickOrSize() {
+        assertThatThrownBy(() -> new TimingWheel<String>(0, 8, START)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TimingWheel<String>(100, 0, START)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,118 @@
+package ru.backend.service.git;
+
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.internal.storage.dfs.DfsRepositoryDescription;
+import org.eclipse.jgit.internal.storage.dfs.InMemoryRepository;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class DirCacheEditsTest {
+
+    private InMemoryRepository repository;
+    private ObjectInserter inserter;
+    private DirCache index;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        repository = new InMemoryRepository(new DfsRepositoryDescription("test"));
+        inserter = repository.newObjectInserter();
+
+        DirCache initial = DirCache.newInCore();
+        for (String path : List.of("a.txt", "dir/b.txt", "dir/sub/c.txt", "dir2/d.txt")) {
+            DirCacheEdits.upsert(initial, inserter, path, path.getBytes(StandardCharsets.UTF_8));
+        }
+        ObjectId tree = initial.writeTree(inserter);
+        inserter.flush();
+        try (ObjectReader reader = repository.newObjectReader()) {
+            index = DirCacheEdits.fromTree(reader, tree);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        inserter.close();
+        repository.close();
+    }
+
+    @Test
+    void deletesFile() throws Exception {
+        DirCacheEdits.delete(index, "a.txt");
+
+        assertThat(paths()).containsExactly("dir/b.txt", "dir/sub/c.txt", "dir2/d.txt");
+    }
+
+    @Test
+    void deletesDirectoryWithoutTouchingSiblingsWithSamePrefix() throws Exception {
+        DirCacheEdits.delete(index, "dir");
+
+        assertThat(paths()).containsExactly("a.txt", "dir2/d.txt");
+    }
+
+    @Test
+    void rejectsDeletingRoot() {
+        assertThatThrownBy(() -> DirCacheEdits.delete(index, ""))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(paths()).hasSize(4);
+    }
+
+    @Test
+    void rejectsDeletingMissingPath() {
+        assertThatThrownBy(() -> DirCacheEdits.delete(index, "di"))
+                .isInstanceOf(FileNotFoundException.class);
+    }
+
+    @Test
+    void renamesFileKeepingContent() throws Exception {
+        ObjectId blob = index.getEntry("a.txt").getObjectId();
+
+        DirCacheEdits.rename(index, "a.txt", "moved/a.txt");
+
+        assertThat(paths()).containsExactly("dir/b.txt", "dir/sub/c.txt", "dir2/d.txt", "moved/a.txt");
+        assertThat(index.getEntry("moved/a.txt").getObjectId()).isEqualTo(blob);
+    }
+
+    @Test
+    void renamesDirectory() throws Exception {
+        DirCacheEdits.rename(index, "dir", "other");
+
+        assertThat(paths()).containsExactly("a.txt", "dir2/d.txt", "other/b.txt", "other/sub/c.txt");
+    }
+
+    @Test
+    void rejectsRenamingRootOrToRoot() {
+        assertThatThrownBy(() -> DirCacheEdits.rename(index, "", "x"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> DirCacheEdits.rename(index, "dir", ""))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(paths()).containsExactly("a.txt", "dir/b.txt", "dir/sub/c.txt", "dir2/d.txt");
+    }
+
+    @Test
+    void rejectsMovingDirectoryIntoItself() {
+        assertThatThrownBy(() -> DirCacheEdits.rename(index, "dir", "dir/sub/dir"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(paths()).hasSize(4);
+    }
+
+    private List<String> paths() {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < index.getEntryCount(); i++) {
+            DirCacheEntry entry = index.getEntry(i);
+            paths.add(entry.getPathString());
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.backend.service.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitDiffCacheTest {
+
+    private static final ObjectId BASE = ObjectId.fromString("1111111111111111111111111111111111111111");
+    private static final ObjectId HEAD = ObjectId.fromString("2222222222222222222222222222222222222222");
+
+    private final GitDiffCache cache = new GitDiffCache(1 << 20);
+
+    @Test
+    void loadsEachKeyOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        GitDiffCache.Key key = new GitDiffCache.Key(BASE, HEAD, "", "patch");
+
+        String first = cache.get(key, () -> "diff-" + loads.incrementAndGet(), String::length);
+        String second = cache.get(key, () -> "diff-" + loads.incrementAndGet(), String::length);
+
+        assertThat(first).isEqualTo("diff-1");
+        assertThat(second).isEqualTo("diff-1");
+        assertThat(cache.get(new GitDiffCache.Key(BASE, HEAD, "", "stat"), () -> "stat", String::length)).isEqualTo("stat");
+    }
+
+    @Test
+    void loaderErrorIsRethrownAndNotCached() throws Exception {
+        GitDiffCache.Key key = new GitDiffCache.Key(null, HEAD, "a.txt", "patch");
+
+        assertThatThrownBy(() -> cache.get(key, () -> {
+            throw new IOException("boom");
+        }, String::length)).isInstanceOf(IOException.class).hasMessage("boom");
+
+        assertThat(cache.get(key, () -> "loaded", String::length)).isEqualTo("loaded");
+    }
+}
@@ -0,0 +1,78 @@
+package ru.backend.service.git;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.util.SystemReader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GitMirrorServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void keyDistinguishesUrlsThatSanitizeAlike() {
+        String first = GitMirrorService.keyOf("https://host/a_b/c.git");
+        String second = GitMirrorService.keyOf("https://host/a/b_c.git");
+
+        assertThat(first).isNotEqualTo(second);
+        assertThat(first).startsWith("c-").matches("[A-Za-z0-9._-]+");
+        assertThat(GitMirrorService.keyOf("https://host/a_b/c.git/")).isEqualTo(first);
+    }
+
+    @Test
+    void commitGraphIsConfiguredPerMirror() throws Exception {
+        GitConnectionRequestDto repo = newRemote();
+        GitMirrorService mirrorService = new GitMirrorService(tmp.resolve("storage").toString(), 0, true);
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            StoredConfig config = lease.getRepository().getConfig();
+            assertThat(config.getBoolean(ConfigConstants.CONFIG_CORE_SECTION, ConfigConstants.CONFIG_COMMIT_GRAPH, false)).isTrue();
+            assertThat(config.getBoolean(ConfigConstants.CONFIG_COMMIT_GRAPH_SECTION, ConfigConstants.CONFIG_KEY_READ_CHANGED_PATHS, false)).isTrue();
+            assertThat(new File(lease.getRepository().getDirectory(), "objects/info/commit-graph")).exists();
+        } finally {
+            mirrorService.close();
+        }
+        assertThat(SystemReader.getInstance().getJGitConfig()
+                .getBoolean(ConfigConstants.CONFIG_COMMIT_GRAPH_SECTION, ConfigConstants.CONFIG_KEY_READ_CHANGED_PATHS, false)).isFalse();
+    }
+
+    @Test
+    void mirrorFetchesOnlyBranchesAndTags() throws Exception {
+        GitConnectionRequestDto repo = newRemote();
+        GitMirrorService mirrorService = new GitMirrorService(tmp.resolve("storage").toString(), 0, false);
+        try (GitMirrorService.Lease lease = mirrorService.acquire(repo)) {
+            Repository mirror = lease.getRepository();
+            assertThat(mirror.getRefDatabase().getRefs()).extracting(Ref::getName)
+                    .containsExactlyInAnyOrder(Constants.R_HEADS + "main", Constants.R_TAGS + "v1");
+        } finally {
+            mirrorService.close();
+        }
+    }
+
+    private GitConnectionRequestDto newRemote() throws Exception {
+        File remote = tmp.resolve("remote").toFile();
+        try (Git git = Git.init().setDirectory(remote).setInitialBranch("main").call()) {
+            git.commit().setMessage("init").setAllowEmpty(true).call();
+            git.tag().setName("v1").call();
+            RefUpdate pull = git.getRepository().updateRef("refs/pull/1/head");
+            pull.setNewObjectId(git.getRepository().resolve("main"));
+            pull.update();
+        }
+        GitConnectionRequestDto repo = new GitConnectionRequestDto();
+        repo.setRepoUrl(remote.toURI().toString());
+        repo.setUsername("test");
+        return repo;
+    }
+}
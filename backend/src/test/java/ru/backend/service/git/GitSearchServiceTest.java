@@ -0,0 +1,128 @@
+package ru.backend.service.git;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.transport.RefSpec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.rest.git.dto.GitSearchHitDto;
+import ru.backend.rest.git.dto.GitSearchPageDto;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitSearchServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private Git work;
+    private GitMirrorService mirrorService;
+    private GitSearchService searchService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        File remote = tmp.resolve("remote.git").toFile();
+        Git.init().setBare(true).setDirectory(remote).setInitialBranch("main").call().close();
+        work = Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(tmp.resolve("work").toFile()).call();
+        work.checkout().setOrphan(true).setName("main").call();
+        commit(Map.of("deploy.yml", "name: web\nimage: nginx:1.25\nreplicas: 2\n", "readme.md", "nginx proxy\n"));
+
+        GitConnectionRequestDto repo = new GitConnectionRequestDto();
+        repo.setName("infra");
+        repo.setRepoUrl(remote.toURI().toString());
+        repo.setBranch("main");
+        repo.setUsername("test");
+        GitService gitService = new GitService(tmp.resolve("storage").toString());
+        gitService.save(repo);
+
+        mirrorService = new GitMirrorService(tmp.resolve("storage").toString(), 0, false);
+        searchService = new GitSearchService(mirrorService, gitService, new GitBlobCache(new SimpleMeterRegistry(), 1 << 20));
+    }
+
+    @AfterEach
+    void tearDown() {
+        searchService.close();
+        mirrorService.close();
+        work.close();
+    }
+
+    @Test
+    void findsLinesWithAllTokens() throws Exception {
+        GitSearchPageDto page = searchService.search("image nginx", null, "infra", null, 0, 10);
+
+        assertThat(page.getItems()).hasSize(1);
+        GitSearchHitDto hit = page.getItems().get(0);
+        assertThat(hit.getPath()).isEqualTo("deploy.yml");
+        assertThat(hit.getLine()).isEqualTo(2);
+        assertThat(hit.getText()).isEqualTo("image: nginx:1.25");
+    }
+
+    @Test
+    void regexFiltersCandidateLines() throws Exception {
+        assertThat(searchService.search("nginx", null, "infra", null, 0, 10).getItems()).hasSize(2);
+
+        GitSearchPageDto page = searchService.search("nginx", "nginx:\\d+", "infra", null, 0, 10);
+
+        assertThat(page.getItems()).extracting(GitSearchHitDto::getPath).containsExactly("deploy.yml");
+    }
+
+    @Test
+    void indexFollowsNewCommits() throws Exception {
+        searchService.search("nginx", null, "infra", null, 0, 10);
+        Files.delete(work.getRepository().getWorkTree().toPath().resolve("readme.md"));
+        work.rm().addFilepattern("readme.md").call();
+        commit(Map.of("deploy.yml", "name: web\nimage: caddy:2\n"));
+        mirrorService.acquireLatest(repo()).close();
+
+        assertThat(searchService.search("nginx", null, "infra", null, 0, 10).getItems()).isEmpty();
+        assertThat(searchService.search("caddy", null, "infra", null, 0, 10).getItems())
+                .extracting(GitSearchHitDto::getLine).containsExactly(2);
+    }
+
+    @Test
+    void rejectsInvalidAndOversizedRegex() {
+        assertThatThrownBy(() -> searchService.search("nginx", "(", "infra", null, 0, 10))
+                .isInstanceOf(PatternSyntaxException.class);
+        assertThatThrownBy(() -> searchService.search("nginx", "a".repeat(1000), "infra", null, 0, 10))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void catastrophicRegexIsTimeBoxed() throws Exception {
+        String line = "a".repeat(40) + "!";
+        commit(Map.of("slow.txt", line + "\n"));
+
+        assertThatThrownBy(() -> searchService.search("a".repeat(40), "(a*)*\\1b", "infra", null, 0, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("мс");
+    }
+
+    private GitConnectionRequestDto repo() {
+        GitConnectionRequestDto repo = new GitConnectionRequestDto();
+        repo.setName("infra");
+        repo.setRepoUrl(tmp.resolve("remote.git").toFile().toURI().toString());
+        repo.setBranch("main");
+        repo.setUsername("test");
+        return repo;
+    }
+
+    private void commit(Map<String, String> files) throws Exception {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Files.writeString(work.getRepository().getWorkTree().toPath().resolve(file.getKey()), file.getValue(), StandardCharsets.UTF_8);
+        }
+        work.add().addFilepattern(".").call();
+        work.commit().setMessage("change").call();
+        work.push().setRefSpecs(new RefSpec("HEAD:refs/heads/main")).setForce(true).call();
+    }
+}
@@ -0,0 +1,133 @@
+package ru.backend.service.git;
+
+import org.eclipse.jgit.lib.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.backend.rest.application.dto.ApplicationDto;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+import ru.backend.rest.git.dto.GitWebhookResultDto;
+import ru.backend.service.application.ApplicationService;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class GitWebhookServiceTest {
+
+    private static final String SECRET = "webhook-secret";
+    private static final String COMMIT = "0123456789abcdef0123456789abcdef01234567";
+
+    private final GitService gitService = mock(GitService.class);
+    private final ApplicationService applicationService = mock(ApplicationService.class);
+    private final GitRefCache refCache = mock(GitRefCache.class);
+    private final GitMirrorService mirrorService = mock(GitMirrorService.class);
+    private GitWebhookService webhookService;
+
+    @BeforeEach
+    void setUp() {
+        webhookService = new GitWebhookService(gitService, applicationService, refCache, mirrorService, SECRET);
+    }
+
+    @Test
+    void acceptsValidSignatureInGithubAndGiteaFormats() throws Exception {
+        byte[] body = push("org/app").getBytes(StandardCharsets.UTF_8);
+        String hex = sign(body, SECRET);
+
+        assertThat(webhookService.verifySignature(body, "sha256=" + hex)).isTrue();
+        assertThat(webhookService.verifySignature(body, hex.toUpperCase())).isTrue();
+    }
+
+    @Test
+    void rejectsBadSignature() throws Exception {
+        byte[] body = push("org/app").getBytes(StandardCharsets.UTF_8);
+        byte[] tampered = push("org/other").getBytes(StandardCharsets.UTF_8);
+
+        assertThat(webhookService.verifySignature(body, "sha256=" + sign(body, "other-secret"))).isFalse();
+        assertThat(webhookService.verifySignature(tampered, "sha256=" + sign(body, SECRET))).isFalse();
+        assertThat(webhookService.verifySignature(body, "sha256=not-hex")).isFalse();
+    }
+
+    @Test
+    void rejectsMissingSignatureAndDisabledSecret() throws Exception {
+        byte[] body = push("org/app").getBytes(StandardCharsets.UTF_8);
+        GitWebhookService disabled = new GitWebhookService(gitService, applicationService, refCache, mirrorService, "");
+
+        assertThat(webhookService.verifySignature(body, null)).isFalse();
+        assertThat(webhookService.verifySignature(body, " ")).isFalse();
+        assertThat(disabled.verifySignature(body, "sha256=" + sign(body, SECRET))).isFalse();
+    }
+
+    @Test
+    void unknownRepositoryIsReported() {
+        when(gitService.getAll()).thenReturn(List.of(repo("infra", "https://github.com/org/infra.git")));
+
+        assertThatThrownBy(() -> webhookService.handlePush(push("org/app").getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(NoSuchElementException.class)
+                .hasMessage("org/app");
+        verify(refCache, never()).invalidate(any());
+    }
+
+    @Test
+    void pushUpdatesEveryRegistrationOfTheRepository() throws Exception {
+        GitConnectionRequestDto https = repo("app-https", "https://github.com/org/app.git");
+        GitConnectionRequestDto ssh = repo("app-ssh", "git@github.com:org/app.git");
+        when(gitService.getAll()).thenReturn(List.of(https, ssh, repo("infra", "https://github.com/org/infra.git")));
+        when(applicationService.getAll()).thenReturn(List.of(
+                app("api", "app-https", "main"), app("worker", "app-ssh", "main"), app("docs", "app-ssh", "gh-pages")));
+        when(applicationService.applyBranches(any(), any())).thenReturn("Synced");
+
+        GitWebhookResultDto result = webhookService.handlePush(push("org/app").getBytes(StandardCharsets.UTF_8));
+
+        assertThat(result.getApplications()).containsOnlyKeys("api", "worker");
+        Map<String, ObjectId> branches = Map.of("main", ObjectId.fromString(COMMIT));
+        verify(applicationService).applyBranches(eq("api"), eq(branches));
+        verify(applicationService).applyBranches(eq("worker"), eq(branches));
+        verify(refCache).invalidate(https);
+        verify(refCache).invalidate(ssh);
+        verify(mirrorService).invalidate(https);
+        verify(mirrorService).invalidate(ssh);
+        assertThat(webhookService.getLastDelivery(https)).isPositive();
+        assertThat(webhookService.getLastDelivery(ssh)).isPositive();
+    }
+
+    private static String push(String fullName) {
+        return """
+                {"ref":"refs/heads/main","after":"%s","repository":{"full_name":"%s",\
+                "clone_url":"https://github.com/%s.git","ssh_url":"git@github.com:%s.git"}}"""
+                .formatted(COMMIT, fullName, fullName, fullName);
+    }
+
+    private static String sign(byte[] body, String secret) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return HexFormat.of().formatHex(mac.doFinal(body));
+    }
+
+    private static GitConnectionRequestDto repo(String name, String url) {
+        GitConnectionRequestDto repo = new GitConnectionRequestDto();
+        repo.setName(name);
+        repo.setRepoUrl(url);
+        return repo;
+    }
+
+    private static ApplicationDto app(String name, String repoName, String branch) {
+        ApplicationDto app = new ApplicationDto();
+        app.setName(name);
+        app.setRepoName(repoName);
+        app.setBranch(branch);
+        return app;
+    }
+}
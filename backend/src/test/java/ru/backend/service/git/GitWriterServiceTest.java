@@ -0,0 +1,272 @@
+package ru.backend.service.git;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.transport.RefSpec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.backend.rest.git.dto.FileNodeDto;
+import ru.backend.rest.git.dto.FileTreePageDto;
+import ru.backend.rest.git.dto.GitCommitDto;
+import ru.backend.rest.git.dto.GitCommitPageDto;
+import ru.backend.rest.git.dto.GitConnectionRequestDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GitWriterServiceTest {
+
+    @TempDir
+    Path tmp;
+
+    private Git work;
+    private GitConnectionRequestDto repo;
+    private GitMirrorService mirrorService;
+    private GitWriterService writerService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        File remote = tmp.resolve("remote.git").toFile();
+        Git.init().setBare(true).setDirectory(remote).setInitialBranch("main").call().close();
+        work = Git.cloneRepository().setURI(remote.toURI().toString()).setDirectory(tmp.resolve("work").toFile()).call();
+        work.checkout().setOrphan(true).setName("main").call();
+
+        repo = new GitConnectionRequestDto();
+        repo.setName("test");
+        repo.setRepoUrl(remote.toURI().toString());
+        repo.setBranch("main");
+        repo.setUsername("test");
+
+        mirrorService = new GitMirrorService(tmp.resolve("storage").toString(), 0, false);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        writerService = new GitWriterService(mirrorService, new GitRefCache(0, 5), new GitWriteQueue(registry, 3),
+                new GitWriteCoalescer(0), new GitDiffCache(1 << 20), new GitBlobCache(registry, 1 << 20));
+    }
+
+    @AfterEach
+    void tearDown() {
+        mirrorService.close();
+        work.close();
+    }
+
+    @Test
+    void treePageLimitsNodesAcrossAllLevels() throws Exception {
+        commit("init", Map.of(
+                "a/1.txt", "1", "a/2.txt", "2", "a/3.txt", "3",
+                "b/deep/x.txt", "x",
+                "c.txt", "c"));
+
+        FileTreePageDto first = writerService.listTree(repo, "main", "", 3, null, 5);
+        assertThat(countNodes(first.getItems())).isLessThanOrEqualTo(5);
+        assertThat(first.getItems()).extracting(FileNodeDto::getName).containsExactly("a");
+        assertThat(first.getItems().get(0).getChildren()).hasSize(3);
+
+        FileTreePageDto second = writerService.listTree(repo, "main", "", 3, first.getNextCursor(), 5);
+        assertThat(second.getItems()).extracting(FileNodeDto::getName).containsExactly("b", "c.txt");
+        assertThat(second.getNextCursor()).isNull();
+    }
+
+    @Test
+    void folderLargerThanPageIsReturnedCollapsed() throws Exception {
+        commit("init", Map.of("big/1.txt", "1", "big/2.txt", "2", "big/3.txt", "3", "z.txt", "z"));
+
+        FileTreePageDto page = writerService.listTree(repo, "main", "", 1000, null, 2);
+
+        assertThat(page.getItems()).extracting(FileNodeDto::getName).containsExactly("big", "z.txt");
+        assertThat(page.getItems().get(0).getChildren()).isEmpty();
+    }
+
+    @Test
+    void treeDepthIsClamped() throws Exception {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            path.append("d").append(i).append('/');
+        }
+        commit("init", Map.of(path + "leaf.txt", "leaf"));
+
+        FileTreePageDto page = writerService.listTree(repo, "main", "", 1000, null, 1000);
+
+        assertThat(countNodes(page.getItems())).isLessThan(20);
+    }
+
+    @Test
+    void historyPagesDoNotDropCommitsOfMergedBranches() throws Exception {
+        RevCommit a1 = commitAt("A1", "a.txt", "1", 1000);
+        work.checkout().setCreateBranch(true).setName("side").call();
+        RevCommit b1 = commitAt("B1", "b.txt", "1", 3000);
+        work.checkout().setName("main").call();
+        RevCommit a2 = commitAt("A2", "a.txt", "2", 4000);
+        work.merge().include(b1).setCommit(false).setFastForward(MergeCommand.FastForwardMode.NO_FF).call();
+        RevCommit merge = commitAt("M", "m.txt", "m", 5000);
+
+        GitCommitPageDto first = writerService.getHistory(repo, "main", null, null, 2);
+        assertThat(first.getItems()).extracting(GitCommitDto::getHash).containsExactly(merge.name(), a2.name());
+
+        GitCommitPageDto second = writerService.getHistory(repo, "main", null, first.getNextCursor(), 2);
+        assertThat(second.getItems()).extracting(GitCommitDto::getHash).containsExactly(b1.name(), a1.name());
+
+        GitCommitPageDto last = writerService.getHistory(repo, "main", null, second.getNextCursor(), 2);
+        assertThat(last.getItems()).isEmpty();
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    void historyRejectsCursorOutsideBranch() throws Exception {
+        commit("init", Map.of("a.txt", "1"));
+
+        assertThatThrownBy(() -> writerService.getHistory(repo, "main", null, ObjectId.zeroId().name(), 2))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void archivesAreDeterministicAndContainTheTree() throws Exception {
+        commit("init", Map.of("app/run.sh", "echo hi", "app/conf/a.yml", "a: 1"));
+        ObjectId tree = writerService.resolveArchiveTree(repo, "main", "app");
+
+        for (String format : List.of("zip", "tar.gz")) {
+            ByteArrayOutputStream first = new ByteArrayOutputStream();
+            writerService.writeArchive(repo, tree, format, first);
+            ByteArrayOutputStream second = new ByteArrayOutputStream();
+            writerService.writeArchive(repo, tree, format, second);
+            assertThat(first.toByteArray()).isEqualTo(second.toByteArray());
+        }
+
+        ByteArrayOutputStream zip = new ByteArrayOutputStream();
+        writerService.writeArchive(repo, tree, "zip", zip);
+        List<String> names = new ArrayList<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip.toByteArray()))) {
+            for (ZipEntry entry = in.getNextEntry(); entry != null; entry = in.getNextEntry()) {
+                names.add(entry.getName());
+            }
+        }
+        assertThat(names).containsExactlyInAnyOrder("conf/a.yml", "run.sh");
+    }
+
+    @Test
+    void deleteAndRenameRejectRootPath() throws Exception {
+        RevCommit head = commit("init", Map.of("a.txt", "1"));
+
+        assertThatThrownBy(() -> writerService.deletePath(repo, "main", "/", "wipe"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> writerService.renamePath(repo, "main", "", "moved", "move"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(writerService.getRecentCommits(repo, "main", null, 0, 1).get(0).getHash()).isEqualTo(head.name());
+    }
+
+    @Test
+    void revertCommitUndoesOnlyThatCommit() throws Exception {
+        commit("init", Map.of("a.txt", "1", "b.txt", "1"));
+        RevCommit changeA = commit("change a", Map.of("a.txt", "2"));
+        RevCommit changeB = commit("change b", Map.of("b.txt", "2"));
+
+        writerService.revertCommit(repo, "main", changeA.name(), "revert a");
+
+        assertThat(writerService.getFileContent(repo, "main", "a.txt")).isEqualTo("1");
+        assertThat(writerService.getFileContent(repo, "main", "b.txt")).isEqualTo("2");
+        List<GitCommitDto> history = writerService.getRecentCommits(repo, "main", null, 0, 2);
+        assertThat(history).extracting(GitCommitDto::getMessage).containsExactly("revert a", "change b");
+        assertThat(history.get(1).getHash()).isEqualTo(changeB.name());
+    }
+
+    @Test
+    void revertLastCommitRemovesAddedFile() throws Exception {
+        commit("init", Map.of("a.txt", "1"));
+        RevCommit added = commit("add b", Map.of("b.txt", "1"));
+
+        writerService.revertLastCommit(repo, "main");
+
+        assertThatThrownBy(() -> writerService.getFileContent(repo, "main", "b.txt"))
+                .isInstanceOf(FileNotFoundException.class);
+        assertThat(writerService.getFileContent(repo, "main", "a.txt")).isEqualTo("1");
+        GitCommitDto head = writerService.getRecentCommits(repo, "main", null, 0, 1).get(0);
+        assertThat(head.getMessage()).isEqualTo("Revert \"add b\"");
+        assertThat(writerService.getRecentCommits(repo, "main", null, 1, 1).get(0).getHash()).isEqualTo(added.name());
+    }
+
+    @Test
+    void conflictingRevertLeavesBranchUntouched() throws Exception {
+        commit("init", Map.of("a.txt", "1"));
+        RevCommit second = commit("second", Map.of("a.txt", "2"));
+        RevCommit third = commit("third", Map.of("a.txt", "3"));
+
+        assertThatThrownBy(() -> writerService.revertCommit(repo, "main", second.name(), "revert"))
+                .isInstanceOf(IllegalStateException.class);
+        assertThat(writerService.getRecentCommits(repo, "main", null, 0, 1).get(0).getHash()).isEqualTo(third.name());
+    }
+
+    @Test
+    void branchAndRevertWritesGoThroughWriteQueue() throws Exception {
+        RevCommit head = commit("init", Map.of("a.txt", "1"));
+        List<String> lanes = new ArrayList<>();
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        GitWriteQueue queue = new GitWriteQueue(registry, 3) {
+            @Override
+            public <T> T execute(GitConnectionRequestDto target, String branch, WriteTask<T> task) throws IOException, GitAPIException {
+                lanes.add(branch);
+                return super.execute(target, branch, task);
+            }
+        };
+        GitWriterService service = new GitWriterService(mirrorService, new GitRefCache(0, 5), queue,
+                new GitWriteCoalescer(0), new GitDiffCache(1 << 20), new GitBlobCache(registry, 1 << 20));
+
+        service.createBranch(repo, "feature", "main");
+        service.revertCommit(repo, "feature", head.name(), "revert init");
+        service.deleteBranch(repo, "feature");
+
+        assertThat(lanes).containsOnly("feature").isNotEmpty();
+        assertThat(service.listBranches(repo)).containsExactly("main");
+    }
+
+    private RevCommit commitAt(String message, String file, String content, long seconds) throws Exception {
+        Path target = work.getRepository().getWorkTree().toPath().resolve(file);
+        Files.writeString(target, content, StandardCharsets.UTF_8);
+        work.add().addFilepattern(".").call();
+        PersonIdent ident = new PersonIdent("test", "test@example.com", Instant.ofEpochSecond(seconds), ZoneOffset.UTC);
+        RevCommit commit = work.commit().setMessage(message).setAuthor(ident).setCommitter(ident).call();
+        work.push().setRefSpecs(new RefSpec("HEAD:refs/heads/" + work.getRepository().getBranch())).setForce(true).call();
+        return commit;
+    }
+
+    RevCommit commit(String message, Map<String, String> files) throws Exception {
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            Path target = work.getRepository().getWorkTree().toPath().resolve(file.getKey());
+            Files.createDirectories(target.getParent());
+            Files.writeString(target, file.getValue(), StandardCharsets.UTF_8);
+        }
+        work.add().addFilepattern(".").call();
+        RevCommit commit = work.commit().setMessage(message).call();
+        work.push().setRefSpecs(new RefSpec("HEAD:refs/heads/main")).setForce(true).call();
+        return commit;
+    }
+
+    private static int countNodes(List<FileNodeDto> nodes) {
+        int count = 0;
+        for (FileNodeDto node : nodes) {
+            count += 1 + countNodes(node.getChildren());
+        }
+        return count;
+    }
+}